@@ -41,6 +41,8 @@ import com.forgenz.mobmanager.common.integration.PluginIntegration;
 import com.forgenz.mobmanager.common.listeners.CommonMobListener;
 import com.forgenz.mobmanager.common.util.ExtendedEntityType;
 import com.forgenz.mobmanager.common.util.FileUtil;
+import com.forgenz.mobmanager.common.util.PlayerIndex;
+import com.forgenz.mobmanager.common.util.RandomUtil;
 import com.forgenz.mobmanager.common.util.Updater;
 import com.forgenz.mobmanager.metrics.Metrics;
 
@@ -68,6 +70,13 @@ public class P extends JavaPlugin
 	{
 		return integration;
 	}
+	
+	private PlayerIndex playerIndex = null;
+	
+	public PlayerIndex getPlayerIndex()
+	{
+		return playerIndex;
+	}
 
 	
 	/* Enabled Components */
@@ -153,6 +162,11 @@ public class P extends JavaPlugin
 		autoUpdateEnabled = getConfig().getBoolean("EnableAutoUpdater", false);
 		AbstractConfig.set(getConfig(), "EnableAutoUpdater", autoUpdateEnabled);
 		
+		long randomSeed = getConfig().getLong("RandomSeed", 0L);
+		if (randomSeed != 0L)
+			RandomUtil.setSeed(randomSeed);
+		AbstractConfig.set(getConfig(), "RandomSeed", randomSeed);
+		
 		// Copy the Config header into config.yml
 		AbstractConfig.copyHeader(getConfig(), "Config_Header.txt", "Global Config\n"
 				+ "\nValid EntityTypes:\n" + ExtendedEntityType.getExtendedEntityList(false)
@@ -160,6 +174,10 @@ public class P extends JavaPlugin
 		
 		integration.integrate();
 		
+		// Keep track of where players are for player searches
+		playerIndex = new PlayerIndex();
+		playerIndex.runTaskTimer(this, 0L, 1L);
+		
 		// Enable each component
 		Component.enableComponents();
 		
@@ -204,6 +222,7 @@ public class P extends JavaPlugin
 		
 		Component.disableComponents();
 		
+		playerIndex = null;
 		p = null;
 		
 		// Backup the current files
@@ -285,33 +304,4 @@ public class P extends JavaPlugin
 			getLogger().info("Failed to start metrics gathering..  :(");
 		}
 	}
-	
-	/* #### IgnoreSpawn Flags #### */
-	private boolean ignoreNextSpawn = false;
-	public void ignoreNextSpawn(boolean value)
-	{
-		ignoreNextSpawn = value;
-	}
-	public boolean shouldIgnoreNextSpawn()
-	{
-		return ignoreNextSpawn;
-	}
-	private boolean limiterIgnoreNextSpawn = false;
-	public void limiterIgnoreNextSpawn(boolean value)
-	{
-		limiterIgnoreNextSpawn = value;
-	}
-	public boolean shouldLimiterIgnoreNextSpawn()
-	{
-		return limiterIgnoreNextSpawn;
-	}
-	private boolean abilitiesIgnoreNextSpawn = false;
-	public void abilitiesIgnoreNextSpawn(boolean value)
-	{
-		abilitiesIgnoreNextSpawn = value;
-	}
-	public boolean shouldAbilitiesIgnoreNextSpawn()
-	{
-		return abilitiesIgnoreNextSpawn;
-	}
 }
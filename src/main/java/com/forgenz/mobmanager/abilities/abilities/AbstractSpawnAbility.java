@@ -36,7 +36,6 @@ import org.bukkit.Location;
 import org.bukkit.entity.LivingEntity;
 
 import com.forgenz.mobmanager.MMComponent;
-import com.forgenz.mobmanager.P;
 import com.forgenz.mobmanager.abilities.AbilityType;
 import com.forgenz.mobmanager.abilities.config.AbilityConfig;
 import com.forgenz.mobmanager.abilities.listeners.AbilitiesMobListener;
@@ -45,11 +44,10 @@ import com.forgenz.mobmanager.common.util.ExtendedEntityType;
 import com.forgenz.mobmanager.common.util.LocationCache;
 import com.forgenz.mobmanager.common.util.MiscUtil;
 import com.forgenz.mobmanager.common.util.RandomLocationGen;
+import com.forgenz.mobmanager.common.util.SpawnContext;
 
 public abstract class AbstractSpawnAbility extends Ability
 {
-	private static boolean spawning = false;
-	
 	private final ExtendedEntityType type;
 	private final int count;
 	private final String abilitySet;
@@ -68,22 +66,25 @@ public abstract class AbstractSpawnAbility extends Ability
 	@Override
 	public void addAbility(LivingEntity entity)
 	{
-		if (spawning)
+		// Make sure the bonus mobs don't recursively spawn more bonus mobs
+		SpawnContext current = SpawnContext.current();
+		if (current != null && current.isBonusSpawn())
 			return;
 		
-		// Make sure the bonus mobs don't recursively spawn more bonus mobs
-		spawning = true;
+		// Get the ability set being assigned to the mob
+		AbilitySet abilities = abilitySet != null ? AbilitySet.getAbilitySet(abilitySet) : null;
+		// Get the entity type the mob will be
+		ExtendedEntityType type = this.type != null ? this.type : (abilitySet != null ? abilities.type : null);
 		
-		try
+		// If there is no entity type return
+		if (type == null)
+			return;
+		
+		// If the mob has an ability set we do not add any abilities
+		try (SpawnContext context = SpawnContext.open().bonusSpawn().type(type).abilitySet(abilities))
 		{
-			// Get the ability set being assigned to the mob
-			AbilitySet abilities = abilitySet != null ? AbilitySet.getAbilitySet(abilitySet) : null;
-			// Get the entity type the mob will be
-			ExtendedEntityType type = this.type != null ? this.type : (abilitySet != null ? abilities.type : null);
-			
-			// If there is no entity type return
-			if (type == null)
-				return;
+			if (!AbilityConfig.i().limitBonusSpawns)
+				context.ignoreLimiter();
 			
 			// Copy the entities location into the cache
 			Location loc = entity.getLocation(LocationCache.getCachedLocation());
@@ -91,13 +92,6 @@ public abstract class AbstractSpawnAbility extends Ability
 			// Spawn each mob
 			for (int i = 0; i < count; ++i)
 			{
-				// If the mob has an ability set we do not add any abilities
-				if (abilities != null)
-					P.p().abilitiesIgnoreNextSpawn(true);
-				
-				if (!AbilityConfig.i().limitBonusSpawns)
-					P.p().limiterIgnoreNextSpawn(true);
-				
 				Location spawnLoc;
 				if (AbilityConfig.i().radiusBonusSpawn)
 					spawnLoc = RandomLocationGen.getLocation(AbilityConfig.i().useCircleLocationGeneration, loc, range, 1, heightRange);
@@ -106,6 +100,9 @@ public abstract class AbstractSpawnAbility extends Ability
 				// Spawn the entity
 				LivingEntity spawnedEntity = type.spawnMob(spawnLoc);
 				
+				if (spawnLoc != loc)
+					LocationCache.release(spawnLoc);
+				
 				if (abilities != null && spawnedEntity != null)
 				{
 					abilities.addAbility(spawnedEntity);
@@ -117,11 +114,8 @@ public abstract class AbstractSpawnAbility extends Ability
 					}
 				}
 			}
-		}
-		finally
-		{
-			// Make sure we can spawn more mobs later :)
-			spawning = false;
+			
+			LocationCache.release(loc);
 		}
 	}
 
@@ -66,7 +66,7 @@ public class AngryAbility extends Ability
 		if (ma.angryRate <= 1.0 && ma.angryRate != 0.0)
 		{
 			// If the random number is lower than the angry chance we make shit angry
-			if (ma.angryRate == 1.0F || RandomUtil.i.nextFloat() < ma.angryRate)
+			if (ma.angryRate == 1.0F || RandomUtil.i().nextFloat() < ma.angryRate)
 			{
 				ability.addAbility(entity);
 			}
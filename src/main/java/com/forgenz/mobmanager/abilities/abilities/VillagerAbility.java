@@ -65,7 +65,7 @@ public class VillagerAbility extends Ability
 		if (ma.villagerRate <= 1.0 && ma.villagerRate != 0.0)
 		{
 			// If the random number is lower than the villager rate we turn it into a villager
-			if (ma.villagerRate == 1.0F || RandomUtil.i.nextFloat() < ma.villagerRate)
+			if (ma.villagerRate == 1.0F || RandomUtil.i().nextFloat() < ma.villagerRate)
 			{
 				ability.addAbility(entity);
 			}
@@ -32,6 +32,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 import org.bukkit.World;
@@ -72,6 +73,14 @@ public class AbilityConfig extends AbstractConfig
 	
 	public final AbilityWorldConfig globalCfg;
 	
+	/** Mob configs for each world config indexed by [spawnReason + 1][entityType] (See {@link #buildTable(AbilityWorldConfig)}) */
+	private final IdentityHashMap<AbilityWorldConfig, MobAbilityConfig[][]> tables = new IdentityHashMap<AbilityWorldConfig, MobAbilityConfig[][]>();
+	/** Table for worlds which abilities are not enabled in */
+	private final MobAbilityConfig[][] disabledTable = new MobAbilityConfig[SpawnReason.values().length + 1][];
+	
+	// Cache of the table used by each world, keyed by the World objects themselves
+	private volatile WorldTables worldTables = new WorldTables(new World[0], new MobAbilityConfig[0][][]);
+	
 	public AbilityConfig()
 	{
 		abilityCfg = this;
@@ -181,6 +190,102 @@ public class AbilityConfig extends AbstractConfig
 			copyHeader(cfg, "Abilities_WorldConfigHeader.txt", "Ability World Config\n");
 			saveConfig(WORLDS_FOLDER + File.separator + worldName, ABILITY_CONFIG_NAME, cfg);
 		}
+		
+		/* ################ Mob Config Tables ################ */
+		tables.put(globalCfg, buildTable(globalCfg));
+		for (AbilityWorldConfig worldCfg : worlds.values())
+			tables.put(worldCfg, buildTable(worldCfg));
+	}
+	
+	/**
+	 * Builds the table of mob configs for a world config</br>
+	 * The first row is used when the spawn reason is ignored and the rest are
+	 * indexed by SpawnReason ordinal + 1. Rows for disabled spawn reasons are null.
+	 * Each row is indexed by ExtendedEntityType ordinal
+	 */
+	private MobAbilityConfig[][] buildTable(AbilityWorldConfig worldCfg)
+	{
+		ExtendedEntityType[] types = ExtendedEntityType.values();
+		MobAbilityConfig[] row = new MobAbilityConfig[types.length];
+		
+		for (ExtendedEntityType type : types)
+		{
+			MobAbilityConfig mobCfg = worldCfg.mobs.get(type);
+			row[type.ordinal()] = mobCfg != null ? mobCfg : globalCfg.mobs.get(type);
+		}
+		
+		// Every enabled spawn reason shares the same row
+		SpawnReason[] reasons = SpawnReason.values();
+		MobAbilityConfig[][] table = new MobAbilityConfig[reasons.length + 1][];
+		
+		table[0] = row;
+		for (SpawnReason reason : reasons)
+		{
+			if (worldCfg.enabledSpawnReasons.contains(reason))
+				table[reason.ordinal() + 1] = row;
+		}
+		
+		return table;
+	}
+	
+	/**
+	 * Fetches the table of mob configs for the world
+	 */
+	private MobAbilityConfig[][] getTable(World world)
+	{
+		// Read once so the worlds and tables always match
+		WorldTables cache = worldTables;
+		for (int i = 0; i < cache.worlds.length; ++i)
+		{
+			if (cache.worlds[i] == world)
+				return cache.tables[i];
+		}
+		
+		return cacheTable(world);
+	}
+	
+	private synchronized MobAbilityConfig[][] cacheTable(World world)
+	{
+		AbilityWorldConfig worldCfg = getWorldConfig(world.getName());
+		MobAbilityConfig[][] table = worldCfg != null ? tables.get(worldCfg) : disabledTable;
+		
+		if (table == null)
+			table = disabledTable;
+		
+		WorldTables cache = worldTables;
+		
+		// Drop worlds which have been unloaded
+		ArrayList<World> worlds = new ArrayList<World>();
+		ArrayList<MobAbilityConfig[][]> worldTables = new ArrayList<MobAbilityConfig[][]>();
+		for (int i = 0; i < cache.worlds.length; ++i)
+		{
+			if (cache.worlds[i] == world || P.p().getServer().getWorld(cache.worlds[i].getUID()) != cache.worlds[i])
+				continue;
+			
+			worlds.add(cache.worlds[i]);
+			worldTables.add(cache.tables[i]);
+		}
+		
+		worlds.add(world);
+		worldTables.add(table);
+		
+		this.worldTables = new WorldTables(worlds.toArray(new World[worlds.size()]), worldTables.toArray(new MobAbilityConfig[worldTables.size()][][]));
+		return table;
+	}
+	
+	/**
+	 * Worlds and the tables they use, replaced as a whole when a world is added
+	 */
+	private static class WorldTables
+	{
+		final World[] worlds;
+		final MobAbilityConfig[][][] tables;
+		
+		WorldTables(World[] worlds, MobAbilityConfig[][][] tables)
+		{
+			this.worlds = worlds;
+			this.tables = tables;
+		}
 	}
 	
 	public AbilityWorldConfig getWorldConfig(String world)
@@ -194,6 +299,22 @@ public class AbilityConfig extends AbstractConfig
 		return worldCfg != null && worldCfg.worldSettingsEnabled() ? worldCfg : globalCfg;
 	}
 	
+	/**
+	 * Fetches the config for the mob type in the world using the precomputed tables
+	 * 
+	 * @param world The world the mob is in
+	 * @param mobType The type of the mob
+	 * @param spawnReason The reason the mob spawned, or null to ignore the spawn reason
+	 * 
+	 * @return The mob config, or null if abilities are not enabled for the mob
+	 */
+	public MobAbilityConfig getMobConfig(World world, ExtendedEntityType mobType, SpawnReason spawnReason)
+	{
+		MobAbilityConfig[] row = getTable(world)[spawnReason != null ? spawnReason.ordinal() + 1 : 0];
+		
+		return row != null && mobType.ordinal() < row.length ? row[mobType.ordinal()] : null;
+	}
+	
 	public MobAbilityConfig getMobConfig(String world, ExtendedEntityType mobType, SpawnReason spawnReason)
 	{
 		AbilityWorldConfig worldCfg = getWorldConfig(world);
@@ -201,7 +322,7 @@ public class AbilityConfig extends AbstractConfig
 		if (worldCfg == null)
 			return null;
 		
-		if (spawnReason != null && !worldCfg.enabledSpawnReasons.containsValue(spawnReason.toString()))
+		if (spawnReason != null && !worldCfg.enabledSpawnReasons.contains(spawnReason))
 			return null;
 		
 		MobAbilityConfig mobCfg = worldCfg.mobs.get(mobType);
@@ -35,7 +35,6 @@ import org.bukkit.entity.Projectile;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
-import org.bukkit.event.entity.CreatureSpawnEvent;
 import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
 import org.bukkit.event.entity.EntityCombustEvent;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
@@ -55,27 +54,29 @@ import com.forgenz.mobmanager.abilities.abilities.SunProofAbility;
 import com.forgenz.mobmanager.abilities.config.AbilityConfig;
 import com.forgenz.mobmanager.abilities.config.MobAbilityConfig;
 import com.forgenz.mobmanager.abilities.util.ValueChance;
+import com.forgenz.mobmanager.common.listeners.CommonMobListener;
+import com.forgenz.mobmanager.common.listeners.CreatureSpawnContext;
 import com.forgenz.mobmanager.common.util.ExtendedEntityType;
 import com.forgenz.mobmanager.common.util.RandomUtil;
 
 public class AbilitiesMobListener implements Listener
 {
 	/**
-	 * Handles random chance spawn rates
+	 * Handles random chance spawn rates</br>
+	 * Called by {@link CommonMobListener} at LOW priority
 	 */
-	@EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
-	public void rates(CreatureSpawnEvent event)
+	public static void rates(CreatureSpawnContext context)
 	{
-		if (P.p().shouldIgnoreNextSpawn() || P.p().shouldAbilitiesIgnoreNextSpawn())
+		if (context.abilitiesIgnored)
 			return;
 		
-		if (!P.p().getPluginIntegration().canApplyAbilities(event.getEntity()))
+		if (!context.canApplyAbilities())
 		{
-			P.p().abilitiesIgnoreNextSpawn(true);
+			context.abilitiesIgnored = true;
 			return;
 		}
 		
-		MobAbilityConfig ma = AbilityConfig.i().getMobConfig(event.getLocation().getWorld().getName(), ExtendedEntityType.valueOf(event.getEntity()), event.getSpawnReason());
+		MobAbilityConfig ma = context.getAbilityConfig();
 		
 		if (ma == null)
 			return;
@@ -84,28 +85,28 @@ public class AbilitiesMobListener implements Listener
 		{
 			if (ma.spawnRate == 0.0)
 			{
-				event.setCancelled(true);
+				context.event.setCancelled(true);
 				return;
 			}
 			// If the random number is higher than the spawn chance we disallow the spawn
-			if (RandomUtil.i.nextFloat() >= ma.spawnRate)
+			if (RandomUtil.i().nextFloat() >= ma.spawnRate)
 			{
-				event.setCancelled(true);
+				context.event.setCancelled(true);
 				return;
 			}
 		}
 	}
 	
 	/**
-	 * Adds abilities to the entity
+	 * Adds abilities to the entity</br>
+	 * Called by {@link CommonMobListener} at NORMAL priority
 	 */
-	@EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
-	public void onCreatureSpawn(CreatureSpawnEvent event)
+	public static void addAbilities(CreatureSpawnContext context)
 	{
-		if (P.p().shouldIgnoreNextSpawn() || P.p().shouldAbilitiesIgnoreNextSpawn())
+		if (context.abilitiesIgnored)
 			return;
 		
-		addAbilities(event.getEntity(), event.getSpawnReason());
+		addAbilities(context.entity, context.getAbilityConfig());
 	}
 	
 	/**
@@ -116,8 +117,17 @@ public class AbilitiesMobListener implements Listener
 	public static void addAbilities(LivingEntity entity, SpawnReason spawnReason)
 	{
 		// Fetch the mob config for this entity
-		MobAbilityConfig ma, rateMa;
-		rateMa = ma = AbilityConfig.i().getMobConfig(entity.getWorld().getName(), ExtendedEntityType.valueOf(entity), spawnReason);
+		addAbilities(entity, AbilityConfig.i().getMobConfig(entity.getWorld(), ExtendedEntityType.valueOf(entity), spawnReason));
+	}
+	
+	/**
+	 * Adds a set of random abilities to the entity
+	 * @param entity The entity to have abilities added to
+	 * @param ma The config for the entity
+	 */
+	private static void addAbilities(LivingEntity entity, MobAbilityConfig ma)
+	{
+		MobAbilityConfig rateMa = ma;
 		
 		// If there is not config for the entity there is nothing more to do
 		if (ma == null)
@@ -170,7 +180,7 @@ public class AbilitiesMobListener implements Listener
 	{
 		if (ma == null)
 		{
-			ma = MMComponent.getAbilities().getConfig().getMobConfig(entity.getWorld().getName(), ExtendedEntityType.valueOf(entity), null);
+			ma = MMComponent.getAbilities().getConfig().getMobConfig(entity.getWorld(), ExtendedEntityType.valueOf(entity), null);
 			if (ma == null)
 			{
 				return;
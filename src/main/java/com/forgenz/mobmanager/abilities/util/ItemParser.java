@@ -187,7 +187,7 @@ public class ItemParser
 		// Set the stack size
 		item.setAmount(item.getType() != Material.AIR ? 1 : 0);
 		// Randomise the damage
-		int damage = damageDiff > 0 ? RandomUtil.i.nextInt(damageDiff + 1) + item.getDurability() : item.getDurability();
+		int damage = damageDiff > 0 ? RandomUtil.i().nextInt(damageDiff + 1) + item.getDurability() : item.getDurability();
 		item.setDurability((short) damage);
 		
 		return item;
@@ -200,8 +200,8 @@ public class ItemParser
 			return null;
 		
 		// Calculate the number of items to create
-		int count = amountDiff > 0 ? RandomUtil.i.nextInt(amountDiff + 1) + item.getAmount() : item.getAmount();
-		int damage = damageDiff > 0 ? RandomUtil.i.nextInt(damageDiff + 1) + item.getDurability() : item.getDurability();
+		int count = amountDiff > 0 ? RandomUtil.i().nextInt(amountDiff + 1) + item.getAmount() : item.getAmount();
+		int damage = damageDiff > 0 ? RandomUtil.i().nextInt(damageDiff + 1) + item.getDurability() : item.getDurability();
 		
 		// Make sure count is more than 0
 		if (count <= 0)
@@ -29,58 +29,54 @@
 package com.forgenz.mobmanager.abilities.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import com.forgenz.mobmanager.common.util.RandomUtil;
+import com.forgenz.mobmanager.common.util.WeightedSampler;
 
+/**
+ * Picks a random value weighted by each values chance</br>
+ * Picks use an alias table which is rebuilt the first time a pick is
+ * made after a chance is added
+ */
 public class ValueChance<T extends Object>
 {
-	private class Chance
-	{
-		final int min;
-		final int max;
-		
-		final T value;
-		
-		private Chance(int min, int max, T value)
-		{
-			this.min = min;
-			this.max = max;
-			this.value = value;
-		}
-	}
+	private final ArrayList<T> values = new ArrayList<T>();
+	private int[] chances = new int[4];
 	
-	private int totalChance = 0;
-	private ArrayList<Chance> chances = new ArrayList<Chance>();
+	private volatile WeightedSampler sampler;
 	
-	public void addChance(int chance, T value)
+	public synchronized void addChance(int chance, T value)
 	{
-		int min = totalChance;
+		if (values.size() == chances.length)
+			chances = Arrays.copyOf(chances, chances.length << 1);
 		
-		totalChance += chance;
+		chances[values.size()] = chance;
+		values.add(value);
 		
-		int max = totalChance;
-		
-		chances.add(new Chance(min, max, value));
+		sampler = null;
 	}
 	
 	public T getBonus()
 	{
-		if (chances.size() == 0)
-			return null;
-		
-		int chance = RandomUtil.i.nextInt(totalChance);
+		WeightedSampler sampler = this.sampler;
 		
-		for (Chance c : chances)
-		{
-			if (c.min <= chance && c.max > chance)
-				return c.value;
-		}
+		if (sampler == null)
+			sampler = buildSampler();
 		
-		return null;
+		int index = sampler.sample(RandomUtil.i());
+		return index >= 0 ? values.get(index) : null;
 	}
 	
 	public int getNumChances()
 	{
-		return chances.size();
+		return values.size();
+	}
+	
+	private synchronized WeightedSampler buildSampler()
+	{
+		if (sampler == null)
+			sampler = new WeightedSampler(Arrays.copyOf(chances, values.size()));
+		return sampler;
 	}
 }
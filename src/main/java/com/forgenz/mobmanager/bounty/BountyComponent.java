@@ -39,7 +39,6 @@ import com.forgenz.mobmanager.bounty.config.BountyConfig;
 import com.forgenz.mobmanager.bounty.config.BountyType;
 import com.forgenz.mobmanager.bounty.listeners.BountyDeathListener;
 import com.forgenz.mobmanager.bounty.listeners.BountyLoginListener;
-import com.forgenz.mobmanager.bounty.listeners.BountySpawnListener;
 import com.forgenz.mobmanager.common.config.AbstractConfig;
 
 public class BountyComponent extends MMComponent
@@ -107,8 +106,6 @@ public class BountyComponent extends MMComponent
 
 		// Register event listeners
 		Bukkit.getPluginManager().registerEvents(new BountyDeathListener(), P.p());
-		if (config.useSpawnerProtection)
-			Bukkit.getPluginManager().registerEvents(new BountySpawnListener(), P.p());
 		if (config.useLoginTimer)
 			Bukkit.getPluginManager().registerEvents(new BountyLoginListener(), P.p());
 
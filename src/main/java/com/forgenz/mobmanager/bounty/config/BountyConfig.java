@@ -507,6 +507,7 @@ public class BountyConfig extends AbstractConfig
 		{
 			Location loc = entity.getLocation(LocationCache.getCachedLocation());
 			Biome biome = entity.getWorld().getBiome(loc.getBlockX(), loc.getBlockZ());
+			LocationCache.release(loc);
 			
 			reward *= biomeMultipliers[biome.ordinal()];
 		}
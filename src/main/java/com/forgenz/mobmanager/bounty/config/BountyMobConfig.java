@@ -31,6 +31,7 @@ package com.forgenz.mobmanager.bounty.config;
 import org.bukkit.configuration.ConfigurationSection;
 
 import com.forgenz.mobmanager.common.config.AbstractConfig;
+import com.forgenz.mobmanager.common.util.RandomUtil;
 
 public class BountyMobConfig extends AbstractConfig
 {
@@ -59,7 +60,7 @@ public class BountyMobConfig extends AbstractConfig
 	
 	public double getReward()
 	{
-		return Math.random() * extra + minReward;
+		return RandomUtil.i().nextDouble() * extra + minReward;
 	}
 	
 	public double getMinReward()
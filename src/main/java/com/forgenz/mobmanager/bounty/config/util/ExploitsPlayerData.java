@@ -90,6 +90,7 @@ public class ExploitsPlayerData
 		loc.setY(cacheLoc.getY());
 		loc.setZ(cacheLoc.getZ());
 		
+		LocationCache.release(cacheLoc);
 		return killCount;
 	}
 
@@ -51,6 +51,7 @@ import com.forgenz.mobmanager.bounty.config.BountyConfig;
 import com.forgenz.mobmanager.bounty.config.BountyType;
 import com.forgenz.mobmanager.bounty.config.BountyWorldConfig;
 import com.forgenz.mobmanager.common.util.ExtendedEntityType;
+import com.forgenz.mobmanager.common.util.RandomUtil;
 
 public class BountyDeathListener implements Listener
 {
@@ -232,7 +233,7 @@ public class BountyDeathListener implements Listener
 		int count = (int) reward;
 		reward -= count;
 		
-		if (Math.random() <= reward)
+		if (RandomUtil.i().nextDouble() <= reward)
 		{
 			++count;
 		}
@@ -270,7 +271,7 @@ public class BountyDeathListener implements Listener
 		
 		int exp = (int) reward;
 		
-		if (Math.random() <= reward - exp)
+		if (RandomUtil.i().nextDouble() <= reward - exp)
 		{
 			++exp;
 		}
@@ -31,17 +31,15 @@ package com.forgenz.mobmanager.bounty.listeners;
 import java.util.List;
 
 import org.bukkit.entity.LivingEntity;
-import org.bukkit.event.EventHandler;
-import org.bukkit.event.EventPriority;
-import org.bukkit.event.Listener;
-import org.bukkit.event.entity.CreatureSpawnEvent;
 import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
 import org.bukkit.metadata.FixedMetadataValue;
 import org.bukkit.metadata.MetadataValue;
 
 import com.forgenz.mobmanager.P;
+import com.forgenz.mobmanager.common.listeners.CommonMobListener;
+import com.forgenz.mobmanager.common.listeners.CreatureSpawnContext;
 
-public class BountySpawnListener implements Listener
+public class BountySpawnListener
 {
 	private static final String SPAWNER_META = "MOBMANAGER_SPAWNER_MOB";
 	
@@ -53,14 +51,14 @@ public class BountySpawnListener implements Listener
 	}
 	
 	/**
-	 * Flag the entity as being spawned by a spawner
+	 * Flag the entity as being spawned by a spawner</br>
+	 * Called by {@link CommonMobListener} at MONITOR priority
 	 */
-	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-	public void onCreatureSpawn(CreatureSpawnEvent event)
+	public static void flagSpawnerMob(CreatureSpawnContext context)
 	{
-		if (event.getSpawnReason() == SpawnReason.SPAWNER)
+		if (context.spawnReason == SpawnReason.SPAWNER)
 		{
-			event.getEntity().setMetadata(SPAWNER_META, new FixedMetadataValue(P.p(), true));
+			context.entity.setMetadata(SPAWNER_META, new FixedMetadataValue(P.p(), true));
 		}
 	}
 }
@@ -131,6 +131,12 @@ class MMCommandCount extends MMCommand
 					world.getMobCount(MobType.AMBIENT), world.maxMobs(MobType.AMBIENT),
 					world.getMobCount(MobType.VILLAGER), world.maxMobs(MobType.VILLAGER)));
 			
+			// Drift is shown as MobType totals/individual mob type limits
+			sender.sendMessage(String.format("%1$sDrift (MobType%3$s/%1$sIndividual) - Last:%2$s%4$d%3$s/%2$s%5$d, %1$sTotal:%2$s%6$d%3$s/%2$s%7$d, %1$sRecounts:%2$s%8$d",
+					ChatColor.GREEN, ChatColor.AQUA, ChatColor.YELLOW,
+					world.getLastDrift(), world.getLastIndividualDrift(),
+					world.getTotalDrift(), world.getTotalIndividualDrift(), world.getRecounts()));
+			
 			if (args.length == 1)
 			{
 				totalMonsters += world.getMobCount(MobType.MONSTER);
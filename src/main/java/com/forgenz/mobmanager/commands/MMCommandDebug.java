@@ -34,6 +34,7 @@ import java.util.Map.Entry;
 import java.util.regex.Pattern;
 
 import org.bukkit.ChatColor;
+import org.bukkit.Location;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.LivingEntity;
@@ -41,12 +42,20 @@ import org.bukkit.entity.Player;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 
+import com.forgenz.mobmanager.MMComponent;
 import com.forgenz.mobmanager.abilities.abilities.Ability;
 import com.forgenz.mobmanager.abilities.abilities.PotionAbility;
 import com.forgenz.mobmanager.abilities.config.AbilityConfig;
 import com.forgenz.mobmanager.abilities.config.MobAbilityConfig;
 import com.forgenz.mobmanager.abilities.util.ValueChance;
+import com.forgenz.mobmanager.common.listeners.CommonMobListener;
+import com.forgenz.mobmanager.common.util.ColumnHeightCache;
 import com.forgenz.mobmanager.common.util.ExtendedEntityType;
+import com.forgenz.mobmanager.common.util.LocationCache;
+import com.forgenz.mobmanager.limiter.tasks.MobDespawnTask;
+import com.forgenz.mobmanager.spawner.tasks.spawnfinder.SpawnAttempt.AttemptState;
+import com.forgenz.mobmanager.spawner.tasks.spawnfinder.SpawnAttemptExecutor;
+import com.forgenz.mobmanager.spawner.tasks.spawnfinder.SpawnChunkCache;
 
 public class MMCommandDebug extends MMCommand
 {
@@ -132,8 +141,173 @@ public class MMCommandDebug extends MMCommand
 			return;
 		}
 		
+		if (args.length >= 2 && args[1].equalsIgnoreCase("locationcache"))
+		{
+			locationCacheStats(sender);
+			return;
+		}
+		
+		if (args.length >= 2 && args[1].equalsIgnoreCase("locationcachereset"))
+		{
+			LocationCache.resetStats();
+			sender.sendMessage("Location cache statistics reset");
+			return;
+		}
+		
+		if (args.length >= 2 && args[1].equalsIgnoreCase("despawnscan"))
+		{
+			despawnScanStats(sender);
+			return;
+		}
+		
+		if (args.length >= 2 && args[1].equalsIgnoreCase("columncache"))
+		{
+			columnCacheStats(sender);
+			return;
+		}
+		
+		if (args.length >= 2 && args[1].equalsIgnoreCase("spawnpipeline"))
+		{
+			spawnPipelineStats(sender);
+			return;
+		}
+		
+		if (args.length >= 2 && args[1].equalsIgnoreCase("spawnevents"))
+		{
+			spawnEventStats(sender);
+			return;
+		}
+		
+		if (args.length >= 2 && args[1].equalsIgnoreCase("spawneventsreset"))
+		{
+			CommonMobListener.resetStats();
+			sender.sendMessage("Spawn event statistics reset");
+			return;
+		}
+		
 		sender.sendMessage("This does nothing without arguments");
 	}
+	
+	/**
+	 * Shows how many Locations each thread fetched from the LocationCache and how many had to be allocated
+	 */
+	private void locationCacheStats(CommandSender sender)
+	{
+		double seconds = (System.currentTimeMillis() - LocationCache.getStatsSince()) / 1000.0;
+		if (seconds <= 0.0)
+			seconds = 1.0;
+		
+		sender.sendMessage(String.format("%1$sLocation cache statistics over %2$s%3$.0fs", ChatColor.DARK_GREEN, ChatColor.AQUA, seconds));
+		
+		for (LocationCache.PoolStats stats : LocationCache.getStats())
+		{
+			if (stats.acquired == 0)
+				continue;
+			
+			sender.sendMessage(String.format("%1$s%3$s - Fetched:%2$s%4$d, %1$sAllocated:%2$s%5$d (%6$.1f/s), %1$sReleased:%2$s%7$d, %1$sDiscarded:%2$s%8$d",
+					ChatColor.GREEN, ChatColor.AQUA, stats.thread, stats.acquired, stats.allocated, stats.allocated / seconds, stats.released, stats.discarded));
+		}
+	}
+	
+	/**
+	 * Shows how many spawn attempts have run each state, how many are waiting
+	 * and how often the sync budget ran out
+	 */
+	private void spawnPipelineStats(CommandSender sender)
+	{
+		if (!MMComponent.getSpawner().isEnabled())
+		{
+			sender.sendMessage(ChatColor.RED + "This command requires EnableSpawner in main config to be true");
+			return;
+		}
+		
+		SpawnAttemptExecutor executor = MMComponent.getSpawner().getSpawnFinder().getSpawnAttemptExecutor();
+		
+		sender.sendMessage(String.format("%1$sWaiting - Async:%2$s%3$d, %1$sSync:%2$s%4$d, %1$sMaxSync:%2$s%5$d",
+				ChatColor.DARK_GREEN, ChatColor.AQUA, executor.getAsyncPending(), executor.getSyncPending(), executor.getMaxSyncPending()));
+		sender.sendMessage(String.format("%1$sSync Budget - Last Run:%2$s%3$.2fms, %1$sOverruns:%2$s%4$d, %1$sDropped:%2$s%5$d",
+				ChatColor.DARK_GREEN, ChatColor.AQUA, executor.getLastSyncNanos() / 1000000.0, executor.getSyncOverruns(), executor.getSyncDropped()));
+		
+		SpawnChunkCache chunkCache = MMComponent.getSpawner().getSpawnFinder().getChunkCache();
+		sender.sendMessage(String.format("%1$sChunk Snapshots - Taken:%2$s%3$d, %1$sReused:%2$s%4$d, %1$sZones Dropped:%2$s%5$d",
+				ChatColor.DARK_GREEN, ChatColor.AQUA, chunkCache.getChunksTaken(), chunkCache.getChunksReused(), executor.getZonesDropped()));
+		
+		for (AttemptState state : AttemptState.values())
+		{
+			long count = executor.getStageCount(state);
+			if (count == 0)
+				continue;
+			
+			long nanos = executor.getStageNanos(state);
+			sender.sendMessage(String.format("%1$s%3$s (%4$s) - Attempts:%2$s%5$d, %1$sTime:%2$s%6$.1fms, %1$sThroughput:%2$s%7$.0f/ms",
+					ChatColor.GREEN, ChatColor.AQUA, state, state.sync ? "Sync" : "Async", count, nanos / 1000000.0, nanos > 0 ? count * 1000000.0 / nanos : 0.0));
+		}
+	}
+	
+	/**
+	 * Shows the despawn scanners time budget, throughput and the length of the last full pass
+	 */
+	private void despawnScanStats(CommandSender sender)
+	{
+		if (!MMComponent.getLimiter().isEnabled())
+		{
+			sender.sendMessage(ChatColor.RED + "This command requires EnableLimiter in main config to be true");
+			return;
+		}
+		
+		MobDespawnTask despawner = MMComponent.getLimiter().getDespawner();
+		if (despawner == null)
+			return;
+		
+		sender.sendMessage(String.format("%1$sBudget:%2$s%3$.3fms/tick, %1$sTick:%2$s%4$.1fms, %1$sThroughput:%2$s%5$.1f mobs/ms",
+				ChatColor.GREEN, ChatColor.AQUA, despawner.getCurrentBudgetNanos() / 1000000.0, despawner.getAverageTickNanos() / 1000000.0, despawner.getThroughput()));
+		
+		if (despawner.getPasses() == 0)
+		{
+			sender.sendMessage("No despawn scans have finished yet");
+			return;
+		}
+		
+		sender.sendMessage(String.format("%1$sLast Pass - Time:%2$s%3$dms, %1$sTicks:%2$s%4$d, %1$sChecked:%2$s%5$d, %1$sDespawned:%2$s%6$d, %1$sPasses:%2$s%7$d",
+				ChatColor.GREEN, ChatColor.AQUA, despawner.getLastPassMillis(), despawner.getLastPassTicks(), despawner.getLastPassChecked(), despawner.getLastPassDespawned(), despawner.getPasses()));
+	}
+
+	/**
+	 * Shows how long MobManager has spent handling CreatureSpawnEvents
+	 */
+	private void spawnEventStats(CommandSender sender)
+	{
+		long events = CommonMobListener.getSpawnEvents(), nanos = CommonMobListener.getSpawnNanos();
+		
+		sender.sendMessage(String.format("%1$sEvents:%2$s%3$d, %1$sCancelled:%2$s%4$d, %1$sTime:%2$s%5$.1fms, %1$sAverage:%2$s%6$.1fus/event",
+				ChatColor.GREEN, ChatColor.AQUA, events, CommonMobListener.getCancelledSpawns(), nanos / 1000000.0, events > 0 ? nanos / 1000.0 / events : 0.0));
+	}
+	
+	/**
+	 * Shows the hit rate and memory use of the spawners column height cache
+	 */
+	private void columnCacheStats(CommandSender sender)
+	{
+		if (!MMComponent.getSpawner().isEnabled())
+		{
+			sender.sendMessage(ChatColor.RED + "This command requires EnableSpawner in main config to be true");
+			return;
+		}
+		
+		ColumnHeightCache cache = MMComponent.getSpawner().getSpawnFinder().getColumnCache();
+		if (cache == null)
+		{
+			sender.sendMessage(ChatColor.RED + "The column cache is disabled (ColumnCacheSize is 0)");
+			return;
+		}
+		
+		long hits = cache.getHits(), misses = cache.getMisses();
+		
+		sender.sendMessage(String.format("%1$sHits:%2$s%3$d, %1$sMisses:%2$s%4$d, %1$sHit Rate:%2$s%5$.1f%%",
+				ChatColor.GREEN, ChatColor.AQUA, hits, misses, hits + misses > 0 ? hits * 100.0 / (hits + misses) : 0.0));
+		sender.sendMessage(String.format("%1$sChunks:%2$s%3$d/%4$d, %1$sColumns:%2$s%5$d, %1$sMemory:%2$s%6$.1fKB",
+				ChatColor.GREEN, ChatColor.AQUA, cache.getCachedChunks(), cache.getMaxChunks(), cache.getCachedColumns(), cache.getMemoryUsage() / 1024.0));
+	}
 
 	@Override
 	public String getUsage()
@@ -46,6 +46,7 @@ import com.forgenz.mobmanager.abilities.listeners.AbilitiesMobListener;
 import com.forgenz.mobmanager.common.util.ExtendedEntityType;
 import com.forgenz.mobmanager.common.util.LocationCache;
 import com.forgenz.mobmanager.common.util.RandomLocationGen;
+import com.forgenz.mobmanager.common.util.SpawnContext;
 
 public class MMCommandSpawn extends MMCommand
 {
@@ -136,35 +137,42 @@ public class MMCommandSpawn extends MMCommand
 		
 		int spawnedMobs = 0;
 		
-		for (int i = 0; i < count; ++i)
+		// Spawn all the mobs in one context so the limiter ignores them
+		SpawnContext context = SpawnContext.open().ignoreLimiter().type(entityType);
+		try
 		{
-			P.p().limiterIgnoreNextSpawn(true);
-			
-			Location spawnLoc;			
-			// Check if we should use the random spawn location generator
-			if (MMComponent.getAbilities().isEnabled()
-					&& (!playerSpawn && AbilityConfig.i().commandSpawnUseRadius
-							|| playerSpawn && AbilityConfig.i().commandPSpawnUseRadius))
-			{
-				int minRange = playerSpawn ? AbilityConfig.i().commandPSpawnMinRange : 1;
-				spawnLoc = RandomLocationGen.getLocation(AbilityConfig.i().useCircleLocationGeneration, loc, AbilityConfig.i().bonusSpawnRange, minRange,
-						AbilityConfig.i().bonusSpawnHeightRange);
-				// If flag is set, don't allow mobs to spawn ON the player
-				if (playerSpawn && !AbilityConfig.i().commandPSpawnRadiusAllowCenter && spawnLoc == loc)
-					continue;
-			}
-			else
-			{
-				spawnLoc = loc;
-			}
-			
-			Entity entity = entityType.spawnMob(spawnLoc);
-			
-			if (entity != null)
+			for (int i = 0; i < count; ++i)
 			{
-				++spawnedMobs;
+				Location spawnLoc;
+				// Check if we should use the random spawn location generator
+				if (MMComponent.getAbilities().isEnabled()
+						&& (!playerSpawn && AbilityConfig.i().commandSpawnUseRadius
+								|| playerSpawn && AbilityConfig.i().commandPSpawnUseRadius))
+				{
+					int minRange = playerSpawn ? AbilityConfig.i().commandPSpawnMinRange : 1;
+					spawnLoc = RandomLocationGen.getLocation(AbilityConfig.i().useCircleLocationGeneration, loc, AbilityConfig.i().bonusSpawnRange, minRange,
+							AbilityConfig.i().bonusSpawnHeightRange);
+					// If flag is set, don't allow mobs to spawn ON the player
+					if (playerSpawn && !AbilityConfig.i().commandPSpawnRadiusAllowCenter && spawnLoc == loc)
+						continue;
+				}
+				else
+				{
+					spawnLoc = loc;
+				}
+
+				Entity entity = entityType.spawnMob(spawnLoc);
+
+				if (entity != null)
+				{
+					++spawnedMobs;
+				}
 			}
 		}
+		finally
+		{
+			context.close();
+		}
 		
 		sender.sendMessage(ChatColor.GRAY + "~ Spawned " + spawnedMobs + " " + mob + "s");
 	}
@@ -195,47 +203,53 @@ public class MMCommandSpawn extends MMCommand
 		
 		int spawnedMobs = 0;
 		
-		for (int i = 0; i < count; ++i)
+		// Make sure the mobs spawn without any abilities
+		SpawnContext context = SpawnContext.open().ignoreAll().type(entityType).abilitySet(set);
+		try
 		{
-			// Make sure the mob spawns without any abilities
-			P.p().ignoreNextSpawn(true);
-			
-			Location spawnLoc;
-			// Check if we should use the random spawn location generator
-			if (MMComponent.getAbilities().isEnabled()
-					&& (!playerSpawn && AbilityConfig.i().commandSpawnUseRadius
-							|| playerSpawn && AbilityConfig.i().commandPSpawnUseRadius))
-			{
-				int minRange = playerSpawn ? AbilityConfig.i().commandPSpawnMinRange : 1;
-				spawnLoc = RandomLocationGen.getLocation(AbilityConfig.i().useCircleLocationGeneration, loc, AbilityConfig.i().bonusSpawnRange, minRange,
-						AbilityConfig.i().bonusSpawnHeightRange);
-				// If flag is set, don't allow mobs to spawn ON the player
-				if (playerSpawn && !AbilityConfig.i().commandPSpawnRadiusAllowCenter && spawnLoc == loc)
-					continue;
-			}
-			else
+			for (int i = 0; i < count; ++i)
 			{
-				spawnLoc = loc;
-			}
-			
-			Entity entity = entityType.spawnMob(spawnLoc);
-			
-			if (entity != null)
-			{
-				++spawnedMobs;
-			}
-			
-			if (entity instanceof LivingEntity)
-			{
-				set.addAbility((LivingEntity) entity);
-				set.getAbilityConfig().applyRates((LivingEntity) entity);
-				
-				if (set.applyNormalAbilities())
+				Location spawnLoc;
+				// Check if we should use the random spawn location generator
+				if (MMComponent.getAbilities().isEnabled()
+						&& (!playerSpawn && AbilityConfig.i().commandSpawnUseRadius
+								|| playerSpawn && AbilityConfig.i().commandPSpawnUseRadius))
 				{
-					AbilitiesMobListener.applyNormalAbilities((LivingEntity) entity, null);
+					int minRange = playerSpawn ? AbilityConfig.i().commandPSpawnMinRange : 1;
+					spawnLoc = RandomLocationGen.getLocation(AbilityConfig.i().useCircleLocationGeneration, loc, AbilityConfig.i().bonusSpawnRange, minRange,
+							AbilityConfig.i().bonusSpawnHeightRange);
+					// If flag is set, don't allow mobs to spawn ON the player
+					if (playerSpawn && !AbilityConfig.i().commandPSpawnRadiusAllowCenter && spawnLoc == loc)
+						continue;
+				}
+				else
+				{
+					spawnLoc = loc;
+				}
+
+				Entity entity = entityType.spawnMob(spawnLoc);
+
+				if (entity != null)
+				{
+					++spawnedMobs;
+				}
+
+				if (entity instanceof LivingEntity)
+				{
+					set.addAbility((LivingEntity) entity);
+					set.getAbilityConfig().applyRates((LivingEntity) entity);
+
+					if (set.applyNormalAbilities())
+					{
+						AbilitiesMobListener.applyNormalAbilities((LivingEntity) entity, null);
+					}
 				}
 			}
 		}
+		finally
+		{
+			context.close();
+		}
 		
 		sender.sendMessage(ChatColor.GRAY + "~ Spawned " + spawnedMobs + " " + setName + "s");
 	}
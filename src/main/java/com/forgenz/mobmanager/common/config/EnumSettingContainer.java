@@ -33,9 +33,15 @@ import java.util.List;
 
 import com.forgenz.mobmanager.P;
 
+/**
+ * Holds a set of enum values loaded from the config</br>
+ * The values are also stored in a bitset indexed by their ordinal so
+ * {@link #contains(Enum)} needs no string building or searching
+ */
 public class EnumSettingContainer
 {
 	private ArrayList<String> contains = null;
+	private long[] bits = new long[0];
 	
 	public EnumSettingContainer(Class<?> enumClass, List<?> objectList, String missingEnumError)
 	{
@@ -59,7 +65,7 @@ public class EnumSettingContainer
 			{
 				if (value.toString().equalsIgnoreCase(string))
 				{
-					contains.add(value.toString());
+					add(value);
 					found = true;
 				}
 			}
@@ -69,6 +75,24 @@ public class EnumSettingContainer
 		}
 	}
 	
+	private void add(Object value)
+	{
+		contains.add(value.toString());
+		
+		if (value instanceof Enum<?> == false)
+			return;
+		
+		int ordinal = ((Enum<?>) value).ordinal();
+		if ((ordinal >> 6) >= bits.length)
+		{
+			long[] newBits = new long[(ordinal >> 6) + 1];
+			System.arraycopy(bits, 0, newBits, 0, bits.length);
+			bits = newBits;
+		}
+		
+		bits[ordinal >> 6] |= 1L << ordinal;
+	}
+	
 	public List<String> getList()
 	{
 		if (contains == null)
@@ -84,6 +108,20 @@ public class EnumSettingContainer
 		return contains.contains(string);
 	}
 	
+	/**
+	 * Checks if the enum value is in the container
+	 * 
+	 * @param value A value of the enum class the container was created with
+	 */
+	public boolean contains(Enum<?> value)
+	{
+		if (value == null)
+			return false;
+		
+		int ordinal = value.ordinal();
+		return (ordinal >> 6) < bits.length && (bits[ordinal >> 6] & (1L << ordinal)) != 0;
+	}
+	
 	public void addDefaults(Object ...defaults)
 	{
 		if (contains != null)
@@ -94,7 +132,7 @@ public class EnumSettingContainer
 		
 		for (Object obj : defaults)
 		{
-			contains.add(obj.toString());
+			add(obj);
 		}
 	}
 	
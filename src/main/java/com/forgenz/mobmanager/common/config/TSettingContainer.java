@@ -33,10 +33,17 @@ import java.util.HashSet;
 import java.util.List;
 
 import com.forgenz.mobmanager.P;
+import com.forgenz.mobmanager.common.util.ExtendedEntityType;
 
+/**
+ * Holds a set of values loaded from the config</br>
+ * Enums and ExtendedEntityTypes are also stored in a bitset indexed by their
+ * ordinal so {@link #contains(Object)} needs no hashing
+ */
 public class TSettingContainer<T>
 {
 	private HashSet<T> container;
+	private long[] bits = new long[0];
 	
 	public TSettingContainer(T[] values, List<?> list, String error)
 	{
@@ -56,8 +63,7 @@ public class TSettingContainer<T>
 			{
 				if (val.toString().equalsIgnoreCase((String) obj))
 				{
-					if (!container.contains(val))
-						container.add(val);
+					add(val);
 					valid = true;
 					break;
 				}
@@ -77,8 +83,40 @@ public class TSettingContainer<T>
 		
 		for (T t : defaults)
 		{
-			container.add(t);
+			add(t);
+		}
+	}
+	
+	private void add(T val)
+	{
+		container.add(val);
+		
+		int ordinal = ordinalOf(val);
+		if (ordinal < 0)
+			return;
+		
+		if ((ordinal >> 6) >= bits.length)
+		{
+			long[] newBits = new long[(ordinal >> 6) + 1];
+			System.arraycopy(bits, 0, newBits, 0, bits.length);
+			bits = newBits;
 		}
+		
+		bits[ordinal >> 6] |= 1L << ordinal;
+	}
+	
+	/**
+	 * Fetches the index of the value in its bitset
+	 * 
+	 * @return The index, or -1 if the value can only be checked using the hash set
+	 */
+	private static int ordinalOf(Object val)
+	{
+		if (val instanceof Enum<?>)
+			return ((Enum<?>) val).ordinal();
+		if (val instanceof ExtendedEntityType)
+			return ((ExtendedEntityType) val).ordinal();
+		return -1;
 	}
 
 	public List<String> getList()
@@ -96,9 +134,14 @@ public class TSettingContainer<T>
 	
 	public boolean contains(T val)
 	{
-		if (container == null)
+		if (container == null || val == null)
 			return false;
-		return container.contains(val);
+		
+		int ordinal = ordinalOf(val);
+		if (ordinal < 0)
+			return container.contains(val);
+		
+		return (ordinal >> 6) < bits.length && (bits[ordinal >> 6] & (1L << ordinal)) != 0;
 	}
 
 	@Override
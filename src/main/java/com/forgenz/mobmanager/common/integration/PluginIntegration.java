@@ -36,6 +36,7 @@ import org.bukkit.plugin.Plugin;
 
 import com.forgenz.mobmanager.MMComponent;
 import com.forgenz.mobmanager.P;
+import com.forgenz.mobmanager.common.util.SpawnContext;
 
 /**
  * Used to stop MobManager from despawning/editing special mobs spawned by other plugins<br/>
@@ -193,25 +194,32 @@ public class PluginIntegration implements Protector
 	/* #### IgnoreSpawn Flags #### */
 	/**
 	 * @param value True if all components of MobManager should ignore the next spawn
+	 * @deprecated Open a {@link SpawnContext} around the spawns instead
 	 */
+	@Deprecated
 	public void ignoreNextSpawn(boolean value)
 	{
-		P.p().ignoreNextSpawn(value);
+		SpawnContext.nextSpawn().setIgnoreLimiter(value);
+		SpawnContext.nextSpawn().setIgnoreAbilities(value);
 	}
 	
 	/**
 	 * @param value True if the limiter component of MobManager should ignore the next spawn
+	 * @deprecated Open a {@link SpawnContext} around the spawns instead
 	 */
+	@Deprecated
 	public void limiterIgnoreNextSpawn(boolean value)
 	{
-		P.p().limiterIgnoreNextSpawn(value);
+		SpawnContext.nextSpawn().setIgnoreLimiter(value);
 	}
 	
 	/**
 	 * @param value True if the abilities component of MobManager should ignore the next spawn
+	 * @deprecated Open a {@link SpawnContext} around the spawns instead
 	 */
+	@Deprecated
 	public void abilitiesIgnoreNextSpawn(boolean value)
 	{
-		P.p().abilitiesIgnoreNextSpawn(value);
+		SpawnContext.nextSpawn().setIgnoreAbilities(value);
 	}
 }
@@ -25,7 +25,6 @@
  * authors and contributors and should not be interpreted as representing official policies,
  * either expressed or implied, of anybody else.
  */
-
 package com.forgenz.mobmanager.common.listeners;
 
 import org.bukkit.event.EventHandler;
@@ -33,18 +32,142 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.CreatureSpawnEvent;
 
-import com.forgenz.mobmanager.P;
+import com.forgenz.mobmanager.MMComponent;
+import com.forgenz.mobmanager.abilities.listeners.AbilitiesMobListener;
+import com.forgenz.mobmanager.bounty.listeners.BountySpawnListener;
+import com.forgenz.mobmanager.common.util.SpawnContext;
+import com.forgenz.mobmanager.limiter.LimiterComponent;
+import com.forgenz.mobmanager.limiter.listeners.MobListener;
 
+/**
+ * Handles CreatureSpawnEvents for every component</br>
+ * A {@link CreatureSpawnContext} is built once per event and passed through each
+ * component's spawn stages in order:
+ * <ul>
+ *     <li>LOW: Limiter spawn limits, then Abilities spawn rates</li>
+ *     <li>NORMAL: Abilities are added</li>
+ *     <li>MONITOR: Limiter counts the mob, Bounty flags spawner mobs</li>
+ * </ul>
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
 public class CommonMobListener implements Listener
 {
+	/** Context of the spawn event currently being handled (Spawn events only fire in the main thread) */
+	private CreatureSpawnContext current;
+	
+	// Spawn handling statistics
+	private static long spawnEvents, spawnNanos, cancelledSpawns;
+	
+	public static long getSpawnEvents()
+	{
+		return spawnEvents;
+	}
+	
+	public static long getSpawnNanos()
+	{
+		return spawnNanos;
+	}
+	
+	public static long getCancelledSpawns()
+	{
+		return cancelledSpawns;
+	}
+	
+	public static void resetStats()
+	{
+		spawnEvents = spawnNanos = cancelledSpawns = 0L;
+	}
+	
+	/**
+	 * Fetches the context for the event, creating it if it does not exist</br>
+	 * Spawns can happen while another spawn is being handled, so contexts are kept in a stack
+	 */
+	private CreatureSpawnContext getContext(CreatureSpawnEvent event)
+	{
+		for (CreatureSpawnContext context = current; context != null; context = context.previous)
+		{
+			if (context.event == event)
+			{
+				// Any contexts above this one belong to events which have finished
+				return current = context;
+			}
+		}
+		
+		return current = new CreatureSpawnContext(event, current);
+	}
+	
+	/**
+	 * Checks limits and spawn rates to determine if the mob can spawn
+	 */
+	@EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
+	public void onCreatureSpawnLow(CreatureSpawnEvent event)
+	{
+		long start = System.nanoTime();
+		CreatureSpawnContext context = getContext(event);
+		
+		if (MMComponent.getLimiter().isEnabled() && !LimiterComponent.worlds.isEmpty())
+		{
+			MobListener.checkSpawn(context);
+		}
+		
+		if (!event.isCancelled() && MMComponent.getAbilities().isEnabled())
+		{
+			AbilitiesMobListener.rates(context);
+		}
+		
+		spawnNanos += System.nanoTime() - start;
+	}
+	
+	/**
+	 * Adds abilities to the mob
+	 */
+	@EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
+	public void onCreatureSpawnNormal(CreatureSpawnEvent event)
+	{
+		if (!MMComponent.getAbilities().isEnabled())
+			return;
+		
+		long start = System.nanoTime();
+		
+		AbilitiesMobListener.addAbilities(getContext(event));
+		
+		spawnNanos += System.nanoTime() - start;
+	}
+	
 	/**
-	 * Resets the ignoreSpawn flags
+	 * Records the spawn and resets the next spawn flags
 	 */
 	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = false)
 	public void onCreatureSpawn(CreatureSpawnEvent event)
 	{
-		P.p().ignoreNextSpawn(false);
-		P.p().abilitiesIgnoreNextSpawn(false);
-		P.p().limiterIgnoreNextSpawn(false);
+		long start = System.nanoTime();
+		CreatureSpawnContext context = getContext(event);
+		
+		if (!event.isCancelled())
+		{
+			if (MMComponent.getLimiter().isEnabled())
+			{
+				MobListener.countSpawn(context);
+			}
+			
+			if (MMComponent.getBounties().isEnabled() && MMComponent.getBounties().getConfig().useSpawnerProtection)
+			{
+				BountySpawnListener.flagSpawnerMob(context);
+			}
+		}
+		else
+		{
+			++cancelledSpawns;
+		}
+		
+		// The event is finished with
+		current = context.previous;
+		
+		SpawnContext.resetNextSpawn();
+		
+		++spawnEvents;
+		spawnNanos += System.nanoTime() - start;
 	}
 }
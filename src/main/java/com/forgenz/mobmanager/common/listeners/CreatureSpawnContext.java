@@ -0,0 +1,145 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.common.listeners;
+
+import org.bukkit.World;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
+
+import com.forgenz.mobmanager.MMComponent;
+import com.forgenz.mobmanager.P;
+import com.forgenz.mobmanager.abilities.config.AbilityConfig;
+import com.forgenz.mobmanager.abilities.config.MobAbilityConfig;
+import com.forgenz.mobmanager.common.util.ExtendedEntityType;
+import com.forgenz.mobmanager.common.util.SpawnContext;
+import com.forgenz.mobmanager.limiter.world.MMWorld;
+
+/**
+ * Holds everything the spawn stages need to know about a CreatureSpawnEvent</br>
+ * Each value is resolved at most once per event, no matter how many stages use it
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class CreatureSpawnContext
+{
+	public final CreatureSpawnEvent event;
+	public final LivingEntity entity;
+	public final World world;
+	public final SpawnReason spawnReason;
+	public final ExtendedEntityType type;
+	/** The context the spawn happened in (Null if no context was open) */
+	public final SpawnContext spawnContext;
+	
+	/** The context of the spawn event this one fired within (If any) */
+	final CreatureSpawnContext previous;
+	
+	/** Set when the limiter should not limit this spawn */
+	public boolean limiterIgnored;
+	/** Set when abilities should not be applied to this spawn */
+	public boolean abilitiesIgnored;
+	
+	private boolean limiterWorldFetched, abilityConfigFetched;
+	private MMWorld limiterWorld;
+	private MobAbilityConfig abilityConfig;
+	
+	// Protector verdicts (0 = not checked, 1 = allowed, -1 = denied)
+	private byte canDespawn, canApplyAbilities;
+	
+	CreatureSpawnContext(CreatureSpawnEvent event, CreatureSpawnContext previous)
+	{
+		this.event = event;
+		this.entity = event.getEntity();
+		this.world = event.getLocation().getWorld();
+		this.spawnReason = event.getSpawnReason();
+		this.previous = previous;
+		this.spawnContext = SpawnContext.current();
+		
+		ExtendedEntityType type = spawnContext != null ? spawnContext.getType(entity) : null;
+		this.type = type != null ? type : ExtendedEntityType.valueOf(entity);
+		
+		SpawnContext nextSpawn = SpawnContext.peekNextSpawn();
+		this.limiterIgnored = spawnContext != null && spawnContext.ignoresLimiter() || nextSpawn != null && nextSpawn.ignoresLimiter();
+		this.abilitiesIgnored = spawnContext != null && spawnContext.ignoresAbilities() || nextSpawn != null && nextSpawn.ignoresAbilities();
+	}
+	
+	/**
+	 * Fetches the limiter's world the entity spawned in
+	 * 
+	 * @return The world, or null if the limiter is disabled or does not manage the world
+	 */
+	public MMWorld getLimiterWorld()
+	{
+		if (!limiterWorldFetched)
+		{
+			limiterWorldFetched = true;
+			limiterWorld = MMComponent.getLimiter().isEnabled() ? MMComponent.getLimiter().getWorld(world) : null;
+		}
+		
+		return limiterWorld;
+	}
+	
+	/**
+	 * Fetches the abilities config for the entity
+	 * 
+	 * @return The config, or null if abilities are disabled for the entity
+	 */
+	public MobAbilityConfig getAbilityConfig()
+	{
+		if (!abilityConfigFetched)
+		{
+			abilityConfigFetched = true;
+			abilityConfig = MMComponent.getAbilities().isEnabled() ? AbilityConfig.i().getMobConfig(world, type, spawnReason) : null;
+		}
+		
+		return abilityConfig;
+	}
+	
+	/**
+	 * Checks with protectors if the entity can be despawned/limited
+	 */
+	public boolean canDespawn()
+	{
+		if (canDespawn == 0)
+			canDespawn = P.p().getPluginIntegration().canDespawn(entity) ? (byte) 1 : (byte) -1;
+		
+		return canDespawn == 1;
+	}
+	
+	/**
+	 * Checks with protectors if abilities can be applied to the entity
+	 */
+	public boolean canApplyAbilities()
+	{
+		if (canApplyAbilities == 0)
+			canApplyAbilities = P.p().getPluginIntegration().canApplyAbilities(entity) ? (byte) 1 : (byte) -1;
+		
+		return canApplyAbilities == 1;
+	}
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.common.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+
+/**
+ * Caches the Y levels a mob can stand at for each column of a chunk</br>
+ * A Y level is a standing level if the block below is solid and the block
+ * and the one above it are safe to spawn in
+ * <p>
+ * Columns are scanned from chunk snapshots the first time they are needed and
+ * are dropped when a block in the column changes or the chunk unloads.
+ * The number of chunks kept is bounded, least recently used chunks are dropped first
+ * <p>
+ * Block changes are remembered separately for a short while so columns scanned
+ * from snapshots taken before the change are not cached. Times are taken from
+ * {@link System#nanoTime()} so they can't be moved backwards like the world time
+ * <p>
+ * Safe to use from any thread
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class ColumnHeightCache
+{
+	private static final short[] NO_HEIGHTS = new short[0];
+	
+	/** Rough size of a cached chunk without any columns (Object + array of 256 references) */
+	private static final int CHUNK_BYTES = 32 + 16 + 256 * 4;
+	
+	private final int maxChunks;
+	private final HashMap<World, LongObjectMap<CachedChunk>> worlds = new HashMap<World, LongObjectMap<CachedChunk>>();
+	
+	/** Time in nanoseconds block changes are remembered for */
+	private final long changeMemoryNanos;
+	/** The time in nanoseconds each chunk last had a block changed */
+	private final HashMap<World, LongObjectMap<Long>> changes = new HashMap<World, LongObjectMap<Long>>();
+	private long lastForgotChanges = System.nanoTime();
+	
+	private int cachedChunks, cachedColumns;
+	private long memoryUsage;
+	private long useCounter;
+	
+	private long hits, misses;
+	
+	/**
+	 * @param maxChunks The max number of chunks to keep columns for
+	 * @param changeMemoryTicks The number of ticks block changes are remembered for,
+	 * this must be longer than any snapshot passed to the cache is used for
+	 */
+	public ColumnHeightCache(int maxChunks, int changeMemoryTicks)
+	{
+		this.maxChunks = Math.max(maxChunks, 1);
+		this.changeMemoryNanos = changeMemoryTicks * 50000000L;
+	}
+	
+	/**
+	 * Fetches the standing Y levels for a column, highest first</br>
+	 * The column is scanned from the snapshot if it is not already cached
+	 * 
+	 * @param world The world the snapshot was taken in
+	 * @param chunk The snapshot of the chunk containing the column
+	 * @param takenAt {@link System#nanoTime()} when the snapshot was taken, or earlier
+	 * @param x The X coordinate of the column inside the chunk (0-15)
+	 * @param z The Z coordinate of the column inside the chunk (0-15)
+	 * 
+	 * @return The standing Y levels, this array must not be modified
+	 */
+	public short[] getHeights(World world, ChunkSnapshot chunk, long takenAt, int x, int z)
+	{
+		long key = LongObjectMap.key(chunk.getX(), chunk.getZ());
+		int index = x << 4 | z;
+		
+		synchronized (this)
+		{
+			LongObjectMap<CachedChunk> chunks = worlds.get(world);
+			CachedChunk cached = chunks != null ? chunks.get(key) : null;
+			
+			if (cached != null)
+			{
+				cached.lastUsed = ++useCounter;
+				
+				short[] heights = cached.columns[index];
+				if (heights != null)
+				{
+					++hits;
+					return heights;
+				}
+			}
+			
+			++misses;
+		}
+		
+		// Scan the column outside of the lock
+		short[] heights = scanColumn(chunk, x, z);
+		
+		synchronized (this)
+		{
+			// Don't keep columns from snapshots which were taken before the chunk last changed
+			LongObjectMap<Long> changed = changes.get(world);
+			Long changedAt = changed != null ? changed.get(key) : null;
+			if (changedAt != null && takenAt - changedAt <= 0L)
+				return heights;
+			
+			CachedChunk cached = getOrCreate(world, key);
+			
+			if (cached.columns[index] == null)
+			{
+				cached.columns[index] = heights;
+				++cachedColumns;
+				memoryUsage += columnBytes(heights);
+			}
+		}
+		
+		return heights;
+	}
+	
+	/**
+	 * Drops the cached column at the given block location</br>
+	 * Columns scanned from snapshots taken before now will not be cached
+	 * 
+	 * @param world The world the block is in
+	 * @param x The blocks X coordinate
+	 * @param z The blocks Z coordinate
+	 */
+	public synchronized void invalidate(World world, int x, int z)
+	{
+		long key = LongObjectMap.key(x >> 4, z >> 4);
+		long now = System.nanoTime();
+		
+		LongObjectMap<CachedChunk> chunks = worlds.get(world);
+		CachedChunk cached = chunks != null ? chunks.get(key) : null;
+		
+		int index = (x & 15) << 4 | (z & 15);
+		if (cached != null && cached.columns[index] != null)
+		{
+			memoryUsage -= columnBytes(cached.columns[index]);
+			--cachedColumns;
+			cached.columns[index] = null;
+		}
+		
+		// Forget old changes at most once every period they are remembered for
+		if (now - lastForgotChanges >= changeMemoryNanos)
+		{
+			forgetChanges(now - changeMemoryNanos);
+			lastForgotChanges = now;
+		}
+		
+		LongObjectMap<Long> changed = changes.get(world);
+		
+		if (changed == null)
+			changes.put(world, changed = new LongObjectMap<Long>());
+		
+		changed.put(key, now);
+	}
+	
+	/**
+	 * Drops every cached column in the chunk
+	 */
+	public synchronized void remove(World world, int chunkX, int chunkZ)
+	{
+		LongObjectMap<CachedChunk> chunks = worlds.get(world);
+		
+		if (chunks == null)
+			return;
+		
+		CachedChunk cached = chunks.remove(LongObjectMap.key(chunkX, chunkZ));
+		
+		if (cached != null)
+			drop(cached);
+		
+		if (chunks.isEmpty())
+			worlds.remove(world);
+	}
+	
+	/**
+	 * Drops everything from the cache
+	 */
+	public synchronized void clear()
+	{
+		worlds.clear();
+		changes.clear();
+		cachedChunks = cachedColumns = 0;
+		memoryUsage = 0L;
+	}
+	
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+	
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+	
+	public synchronized int getCachedChunks()
+	{
+		return cachedChunks;
+	}
+	
+	public synchronized int getCachedColumns()
+	{
+		return cachedColumns;
+	}
+	
+	/**
+	 * @return A rough estimate of the memory used by the cache in bytes
+	 */
+	public synchronized long getMemoryUsage()
+	{
+		return memoryUsage;
+	}
+	
+	public int getMaxChunks()
+	{
+		return maxChunks;
+	}
+	
+	private CachedChunk getOrCreate(World world, long key)
+	{
+		LongObjectMap<CachedChunk> chunks = worlds.get(world);
+		
+		if (chunks == null)
+			worlds.put(world, chunks = new LongObjectMap<CachedChunk>());
+		
+		CachedChunk cached = chunks.get(key);
+		
+		if (cached == null)
+		{
+			if (cachedChunks >= maxChunks)
+				evict();
+			
+			chunks.put(key, cached = new CachedChunk());
+			cached.lastUsed = ++useCounter;
+			++cachedChunks;
+			memoryUsage += CHUNK_BYTES;
+		}
+		
+		return cached;
+	}
+	
+	/**
+	 * Forgets block changes which happened before the given time
+	 */
+	private void forgetChanges(long before)
+	{
+		Iterator<LongObjectMap<Long>> it = changes.values().iterator();
+		while (it.hasNext())
+		{
+			LongObjectMap<Long> changed = it.next();
+			
+			for (long key : changed.keys())
+			{
+				if (changed.get(key) - before < 0L)
+					changed.remove(key);
+			}
+			
+			if (changed.isEmpty())
+				it.remove();
+		}
+	}
+	
+	/**
+	 * Drops the least recently used quarter of the cached chunks
+	 */
+	private void evict()
+	{
+		long[] lastUsed = new long[cachedChunks];
+		int i = 0;
+		for (LongObjectMap<CachedChunk> chunks : worlds.values())
+		{
+			for (long key : chunks.keys())
+				lastUsed[i++] = chunks.get(key).lastUsed;
+		}
+		
+		Arrays.sort(lastUsed, 0, i);
+		long threshold = lastUsed[(i - 1) >> 2];
+		
+		for (LongObjectMap<CachedChunk> chunks : worlds.values())
+		{
+			for (long key : chunks.keys())
+			{
+				if (chunks.get(key).lastUsed <= threshold)
+					drop(chunks.remove(key));
+			}
+		}
+	}
+	
+	private void drop(CachedChunk cached)
+	{
+		for (short[] heights : cached.columns)
+		{
+			if (heights != null)
+			{
+				memoryUsage -= columnBytes(heights);
+				--cachedColumns;
+			}
+		}
+		
+		memoryUsage -= CHUNK_BYTES;
+		--cachedChunks;
+	}
+	
+	private static int columnBytes(short[] heights)
+	{
+		// Array header + 2 bytes per height, padded to 8 bytes
+		return heights == NO_HEIGHTS ? 0 : (16 + (heights.length << 1) + 7) & ~7;
+	}
+	
+	/**
+	 * Finds every standing Y level in a column of a chunk snapshot
+	 */
+	@SuppressWarnings("deprecation")
+	private static short[] scanColumn(ChunkSnapshot chunk, int x, int z)
+	{
+		short[] found = new short[128];
+		int count = 0, foundAir = 0;
+		
+		for (int y = 255; y >= 0; --y)
+		{
+			if (RandomLocationGen.isSafeMaterial(Material.getMaterial(chunk.getBlockTypeId(x, y, z))))
+			{
+				++foundAir;
+			}
+			else
+			{
+				if (foundAir >= 2)
+					found[count++] = (short) (y + 1);
+				foundAir = 0;
+			}
+		}
+		
+		return count == 0 ? NO_HEIGHTS : Arrays.copyOf(found, count);
+	}
+	
+	private static class CachedChunk
+	{
+		private final short[][] columns = new short[256][];
+		private long lastUsed;
+	}
+}
@@ -28,6 +28,7 @@
 
 package com.forgenz.mobmanager.common.util;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 
 import org.bukkit.Location;
@@ -49,18 +50,29 @@ public class ExtendedEntityType
 	private static int nextId = 0;
 	public static final ExtendedEntityType UNKNOWN;
 	private static LinkedHashMap<String, ExtendedEntityType> entityTypes = new LinkedHashMap<String, ExtendedEntityType>();
+	private static final ArrayList<ExtendedEntityType> byId = new ArrayList<ExtendedEntityType>();
+	
+	// Lookup tables indexed by enum ordinals, used to resolve entities without building strings
+	private static final ExtendedEntityType[] byEntityType = new ExtendedEntityType[EntityType.values().length];
+	private static final ExtendedEntityType[] horseVariants = new ExtendedEntityType[Variant.values().length];
+	private static final ExtendedEntityType[][] horseStyles = new ExtendedEntityType[Style.values().length][Color.values().length];
+	private static final ExtendedEntityType witherSkeleton;
+	
+	/** Number of entities in the entity cache, must be a power of 2 */
+	private static final int ENTITY_CACHE_SIZE = 1024;
+	private static final CachedEntity[] entityCache = new CachedEntity[ENTITY_CACHE_SIZE];
 	
 	// Adds entities
 	static
 	{
 		// Wither Skeleton
-		new ExtendedEntityType(EntityType.SKELETON, SkeletonType.WITHER);
+		witherSkeleton = new ExtendedEntityType(EntityType.SKELETON, SkeletonType.WITHER);
 		
 		// EntityTypes
 		for (EntityType eType : EntityType.values())
 		{
 			if (eType.isAlive() && eType != EntityType.PLAYER)
-				new ExtendedEntityType(eType, "");
+				byEntityType[eType.ordinal()] = new ExtendedEntityType(eType, "");
 		}
 		
 		ExtendedEntityType horse = ExtendedEntityType.valueOf(EntityType.HORSE);
@@ -69,21 +81,27 @@ public class ExtendedEntityType
 		{
 			if (v == Variant.HORSE)
 			{
-				for (Style s : Style.values()) {
-					if (s == Style.NONE)
-						s = null;
+				for (Style style : Style.values()) {
+					Style s = style == Style.NONE ? null : style;
 					for (Color c : Color.values())
-						new ExtendedEntityType(EntityType.HORSE, new Object[] {c, s}, horse);
+						horseStyles[style.ordinal()][c.ordinal()] = new ExtendedEntityType(EntityType.HORSE, new Object[] {c, s}, horse);
 				}
 			}
 			else
 			{
-				new ExtendedEntityType(EntityType.HORSE, v);
+				horseVariants[v.ordinal()] = new ExtendedEntityType(EntityType.HORSE, v);
 			}
 		}
 		
 		// Unknown mobs
 		UNKNOWN = new ExtendedEntityType(EntityType.UNKNOWN, "");
+		
+		// Entities which are not alive are unknown
+		for (int i = 0; i < byEntityType.length; ++i)
+		{
+			if (byEntityType[i] == null)
+				byEntityType[i] = UNKNOWN;
+		}
 	}
 	
 	public static ExtendedEntityType[] values()
@@ -93,23 +111,70 @@ public class ExtendedEntityType
 	
 	public static ExtendedEntityType valueOf(int id)
 	{
-		for (ExtendedEntityType type : values())
-		{
-			if (type.id == id)
-				return type;
-		}
-		
-		return null;
+		return id >= 0 && id < byId.size() ? byId.get(id) : null;
 	}
 	
 	public static ExtendedEntityType valueOf(EntityType entityType)
 	{
-		return valueOf(entityType.toString());
+		return byEntityType[entityType.ordinal()];
 	}
 	
+	/**
+	 * Fetches the type of the entity</br>
+	 * Only skeletons and horses need their data checked. Their types are
+	 * cached by entity id, which the server never reuses, so each entity
+	 * only has its data checked once
+	 */
 	public static ExtendedEntityType valueOf(LivingEntity entity)
 	{
-		return valueOf(getEntityTypeData(entity));
+		EntityType type = entity.getType();
+		
+		if (type != EntityType.SKELETON && type != EntityType.HORSE)
+			return valueOf(type);
+		
+		int entityId = entity.getEntityId();
+		int slot = entityId & (ENTITY_CACHE_SIZE - 1);
+		
+		CachedEntity cached = entityCache[slot];
+		if (cached != null && cached.entityId == entityId)
+			return cached.type;
+		
+		return cacheData(entity, type);
+	}
+	
+	/**
+	 * Resolves the subtype of the entity and replaces its cached type</br>
+	 * Must be called if the entities data is changed after it was spawned
+	 */
+	private static ExtendedEntityType cacheData(LivingEntity entity, EntityType type)
+	{
+		ExtendedEntityType eType = resolveData(entity, type);
+		entityCache[entity.getEntityId() & (ENTITY_CACHE_SIZE - 1)] = new CachedEntity(entity.getEntityId(), eType);
+		return eType;
+	}
+	
+	/**
+	 * Finds the subtype of a skeleton or horse
+	 */
+	private static ExtendedEntityType resolveData(LivingEntity entity, EntityType type)
+	{
+		// Handle the case for wither skeletons
+		if (type == EntityType.SKELETON)
+		{
+			SkeletonType skeletonType = ((Skeleton) entity).getSkeletonType();
+			
+			if (skeletonType == SkeletonType.NORMAL)
+				return valueOf(type);
+			return skeletonType == SkeletonType.WITHER ? witherSkeleton : UNKNOWN;
+		}
+		
+		// Handle the case for horses
+		Horse horse = (Horse) entity;
+		Variant variant = horse.getVariant();
+		
+		if (variant == Variant.HORSE)
+			return horseStyles[horse.getStyle().ordinal()][horse.getColor().ordinal()];
+		return horseVariants[variant.ordinal()];
 	}
 	
 	public static ExtendedEntityType valueOf(String string)
@@ -170,6 +235,7 @@ public class ExtendedEntityType
 			mobType = null;
 		
 		entityTypes.put(getTypeData().toUpperCase(), this);
+		byId.add(this);
 	}
 	
 	public EntityType getBukkitEntityType()
@@ -322,13 +388,18 @@ public class ExtendedEntityType
 				if (c != null) horse.setColor(c);
 			}
 			
+			// The spawn event saw the horse before its data was set
+			cacheData(horse, eType);
 			return horse;
 		}
 		
 		if (eData != null)
 		{
 			if (eData == SkeletonType.WITHER)
+			{
 				((Skeleton) entity).setSkeletonType(SkeletonType.WITHER);
+				cacheData(entity, eType);
+			}
 		}
 		
 		switch (eType)
@@ -389,4 +460,20 @@ public class ExtendedEntityType
 			return false;
 		}
 	}
+	
+	/**
+	 * The resolved type of an entity</br>
+	 * Immutable so entries can be shared between threads without locking
+	 */
+	private static class CachedEntity
+	{
+		final int entityId;
+		final ExtendedEntityType type;
+		
+		CachedEntity(int entityId, ExtendedEntityType type)
+		{
+			this.entityId = entityId;
+			this.type = type;
+		}
+	}
 }
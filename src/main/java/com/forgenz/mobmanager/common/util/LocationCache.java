@@ -28,24 +28,59 @@
 
 package com.forgenz.mobmanager.common.util;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Entity;
 
+/**
+ * Pools Location objects so hot paths do not need to allocate a new
+ * Location every time they need one</br>
+ * Each thread has its own bounded pool so no synchronisation is needed.
+ * <p>
+ * Locations fetched from the cache should be given back using
+ * {@link #release(Location)} once they are no longer used. Locations
+ * which are never released are simply garbage collected.
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
 public class LocationCache
 {
-	/** Limits the size of the cache */
+	/** Limits the size of each threads pool */
 	private static final int MAX_CACHE_SIZE = 50;
 	
-	private static final Queue<CachedLocation> locationCacheQueue = new ConcurrentLinkedQueue<CachedLocation>();
+	private static final ThreadLocal<LocationPool> pools = new ThreadLocal<LocationPool>()
+	{
+		@Override
+		protected LocationPool initialValue()
+		{
+			LocationPool pool = new LocationPool(Thread.currentThread().getName());
+			
+			synchronized (registeredPools)
+			{
+				registeredPools.add(new WeakReference<LocationPool>(pool));
+			}
+			
+			return pool;
+		}
+	};
+	
+	/**
+	 * Pools of every thread which has used the cache, used for statistics</br>
+	 * Pools are only weakly referenced so they disappear with their thread
+	 */
+	private static final List<WeakReference<LocationPool>> registeredPools = new ArrayList<WeakReference<LocationPool>>();
+	
+	private static volatile long statsSince = System.currentTimeMillis();
 	
 	public static Location getCachedLocation()
 	{
-		Location cacheLoc = locationCacheQueue.poll();
-		return cacheLoc != null ? cacheLoc : new CachedLocation();
+		return pools.get().acquire();
 	}
 	
 	public static Location getCachedLocation(World world, double x, double y, double z, float yaw, float pitch)
@@ -77,28 +112,149 @@ public class LocationCache
 		return entity.getLocation(getCachedLocation());
 	}
 	
-	private static void storeLocationCache(CachedLocation cacheLoc)
+	/**
+	 * Returns a location to the current threads pool</br>
+	 * The location must not be used after it has been released
+	 * 
+	 * @param loc The location to release (Can be null)
+	 */
+	public static void release(Location loc)
 	{
-		locationCacheQueue.add(cacheLoc);
+		if (loc != null)
+			pools.get().release(loc);
 	}
 	
-	private static class CachedLocation extends Location
+	/**
+	 * Fetches the statistics of the pool of each live thread
+	 */
+	public static List<PoolStats> getStats()
 	{
-
-		public CachedLocation()
+		List<PoolStats> stats = new ArrayList<PoolStats>();
+		
+		synchronized (registeredPools)
 		{
-			super(null, 0.0, 0.0, 0.0);
+			Iterator<WeakReference<LocationPool>> it = registeredPools.iterator();
+			while (it.hasNext())
+			{
+				LocationPool pool = it.next().get();
+				
+				// Remove pools of threads which have died
+				if (pool == null)
+				{
+					it.remove();
+					continue;
+				}
+				
+				stats.add(new PoolStats(pool.thread, pool.acquired, pool.allocated, pool.released, pool.discarded));
+			}
 		}
 		
-		@Override
-		public void finalize() throws Exception
+		return stats;
+	}
+	
+	/**
+	 * @return The time (System.currentTimeMillis()) statistics were last reset
+	 */
+	public static long getStatsSince()
+	{
+		return statsSince;
+	}
+	
+	/**
+	 * Resets the statistics of every pool</br>
+	 * Statistics are not synchronised so counts from threads using the
+	 * cache during a reset may be lost
+	 */
+	public static void resetStats()
+	{
+		statsSince = System.currentTimeMillis();
+		
+		synchronized (registeredPools)
 		{
+			for (WeakReference<LocationPool> ref : registeredPools)
+			{
+				LocationPool pool = ref.get();
+				
+				if (pool != null)
+					pool.acquired = pool.allocated = pool.released = pool.discarded = 0L;
+			}
+		}
+	}
+	
+	/**
+	 * Statistics of a single threads pool
+	 */
+	public static class PoolStats
+	{
+		public final String thread;
+		/** Number of locations fetched from the cache */
+		public final long acquired;
+		/** Number of locations which had to be created as the pool was empty */
+		public final long allocated;
+		/** Number of locations given back to the cache */
+		public final long released;
+		/** Number of released locations dropped as the pool was full */
+		public final long discarded;
+		
+		private PoolStats(String thread, long acquired, long allocated, long released, long discarded)
+		{
+			this.thread = thread;
+			this.acquired = acquired;
+			this.allocated = allocated;
+			this.released = released;
+			this.discarded = discarded;
+		}
+	}
+	
+	private static class LocationPool
+	{
+		private final String thread;
+		private final Location[] pool = new Location[MAX_CACHE_SIZE];
+		private int size = 0;
+		
+		private long acquired, allocated, released, discarded;
+		
+		private LocationPool(String thread)
+		{
+			this.thread = thread;
+		}
+		
+		private Location acquire()
+		{
+			++acquired;
+			
+			if (size == 0)
+			{
+				++allocated;
+				return new Location(null, 0.0, 0.0, 0.0);
+			}
+			
+			Location loc = pool[--size];
+			pool[size] = null;
+			return loc;
+		}
+		
+		private void release(Location loc)
+		{
+			++released;
+			
 			// Make sure we are not wasting too much memory :3
-			if (locationCacheQueue.size() < MAX_CACHE_SIZE)
+			if (size >= pool.length)
+			{
+				++discarded;
+				return;
+			}
+			
+			// Make sure a location released twice is not handed out twice
+			for (int i = 0; i < size; ++i)
 			{
-				storeLocationCache(this);
-				throw new Exception();
+				if (pool[i] == loc)
+					return;
 			}
+			
+			// Don't keep worlds loaded because of pooled locations
+			loc.setWorld(null);
+			pool[size++] = loc;
 		}
 	}
 }
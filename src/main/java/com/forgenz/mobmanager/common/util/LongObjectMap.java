@@ -0,0 +1,260 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+
+package com.forgenz.mobmanager.common.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map with primitive long keys</br>
+ * Used for chunk/cell coordinate lookups where boxing a Long for every
+ * lookup would create a lot of garbage
+ * <p>
+ * Not thread safe. Maps which are shared between threads must not be
+ * modified after they are published.
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ * @param <T> The type of the values
+ */
+public class LongObjectMap<T>
+{
+	private static final float LOAD_FACTOR = 0.5F;
+	
+	private long[] keys;
+	private Object[] values;
+	private int mask;
+	private int threshold;
+	private int size;
+	
+	public LongObjectMap()
+	{
+		this(16);
+	}
+	
+	public LongObjectMap(int expectedSize)
+	{
+		int capacity = 16;
+		while (capacity * LOAD_FACTOR < expectedSize)
+			capacity <<= 1;
+		
+		allocate(capacity);
+	}
+	
+	/**
+	 * Packs two integer coordinates into a single key
+	 * 
+	 * @param x The X coordinate (E.g. chunk X)
+	 * @param z The Z coordinate (E.g. chunk Z)
+	 * 
+	 * @return A key unique to the coordinate pair
+	 */
+	public static long key(int x, int z)
+	{
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+	
+	public static int keyX(long key)
+	{
+		return (int) (key >> 32);
+	}
+	
+	public static int keyZ(long key)
+	{
+		return (int) key;
+	}
+	
+	private static int hash(long key)
+	{
+		key *= 0x9E3779B97F4A7C15L;
+		return (int) (key ^ (key >>> 32));
+	}
+	
+	private void allocate(int capacity)
+	{
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+	
+	/**
+	 * Finds the slot which contains the key
+	 * 
+	 * @return The index of the key or -1 if it is not in the map
+	 */
+	private int indexOf(long key)
+	{
+		for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask)
+		{
+			if (keys[i] == key)
+				return i;
+		}
+		return -1;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public T get(long key)
+	{
+		int i = indexOf(key);
+		return i >= 0 ? (T) values[i] : null;
+	}
+	
+	public T get(int x, int z)
+	{
+		return get(key(x, z));
+	}
+	
+	public boolean containsKey(long key)
+	{
+		return indexOf(key) >= 0;
+	}
+	
+	/**
+	 * Adds a value to the map
+	 * 
+	 * @param key The key
+	 * @param value The value, can not be null
+	 * 
+	 * @return The previous value mapped to the key
+	 */
+	@SuppressWarnings("unchecked")
+	public T put(long key, T value)
+	{
+		if (value == null)
+			throw new NullPointerException("LongObjectMap does not support null values");
+		
+		int i = hash(key) & mask;
+		for (; values[i] != null; i = (i + 1) & mask)
+		{
+			if (keys[i] == key)
+			{
+				T old = (T) values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+		
+		keys[i] = key;
+		values[i] = value;
+		
+		if (++size > threshold)
+			resize(keys.length << 1);
+		return null;
+	}
+	
+	/**
+	 * Removes the value mapped to the key
+	 * 
+	 * @return The value which was removed
+	 */
+	@SuppressWarnings("unchecked")
+	public T remove(long key)
+	{
+		int i = indexOf(key);
+		
+		if (i < 0)
+			return null;
+		
+		T old = (T) values[i];
+		
+		// Shift following entries back so lookups don't stop at the gap
+		int gap = i;
+		for (i = (i + 1) & mask; values[i] != null; i = (i + 1) & mask)
+		{
+			int home = hash(keys[i]) & mask;
+			
+			// Move the entry if its home slot is not between the gap and its current slot
+			if (gap <= i ? (home <= gap || home > i) : (home <= gap && home > i))
+			{
+				keys[gap] = keys[i];
+				values[gap] = values[i];
+				gap = i;
+			}
+		}
+		
+		values[gap] = null;
+		--size;
+		return old;
+	}
+	
+	private void resize(int capacity)
+	{
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		
+		allocate(capacity);
+		
+		for (int i = 0; i < oldValues.length; ++i)
+		{
+			if (oldValues[i] == null)
+				continue;
+			
+			int j = hash(oldKeys[i]) & mask;
+			while (values[j] != null)
+				j = (j + 1) & mask;
+			
+			keys[j] = oldKeys[i];
+			values[j] = oldValues[i];
+		}
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+	
+	public void clear()
+	{
+		Arrays.fill(values, null);
+		size = 0;
+	}
+	
+	/**
+	 * Copies the keys in the map into an array
+	 * 
+	 * @return Array of all keys in the map
+	 */
+	public long[] keys()
+	{
+		long[] keyArray = new long[size];
+		
+		for (int i = 0, j = 0; i < values.length; ++i)
+		{
+			if (values[i] != null)
+				keyArray[j++] = keys[i];
+		}
+		
+		return keyArray;
+	}
+}
@@ -109,6 +109,24 @@ public class PlayerFinder
 	 * @return The players argument
 	 */
 	public static <T extends Collection<Player>> T findNearbyPlayers(Location loc, FinderMode mode, int radiusSquared, int height, T players)
+	{
+		// Use the player index if it has been built
+		PlayerIndex index = getPlayerIndex();
+		if (index != null)
+			return index.findNearbyPlayers(loc, mode, radiusSquared, height, players);
+		
+		return scanNearbyPlayers(loc, mode, radiusSquared, height, players);
+	}
+	
+	/**
+	 * Fetches all nearby players by checking every online player</br>
+	 * Used until the player index has been built
+	 * 
+	 * @See {@link #findNearbyPlayers(Location, FinderMode, int, int, Collection<Player>)}
+	 * 
+	 * @return The players argument
+	 */
+	public static <T extends Collection<Player>> T scanNearbyPlayers(Location loc, FinderMode mode, int radiusSquared, int height, T players)
 	{
 		// Fetch a location object for ploc
 		Location pLoc = LocationCache.getCachedLocation();
@@ -133,6 +151,8 @@ public class PlayerFinder
 				players.add(player);
 			}
 		}
+		
+		LocationCache.release(pLoc);
 		return players;
 	}
 	
@@ -205,7 +225,10 @@ public class PlayerFinder
 		int searchY = world.getSearchHeight() + (flying ? LimiterConfig.flyingMobAditionalBlockDepth : 0);
 		
 		// Find nearby players
-		return playerNear(eLoc, searchDist, searchY);
+		boolean playerNear = playerNear(eLoc, searchDist, searchY);
+		
+		LocationCache.release(eLoc);
+		return playerNear;
 	}
 	
 	/**
@@ -219,6 +242,22 @@ public class PlayerFinder
 	 *         a layer which overlaps the height 'y'
 	 */
 	public static boolean playerNear(Location location, int searchDist, int searchY)
+	{
+		// Use the player index if it has been built
+		PlayerIndex index = getPlayerIndex();
+		if (index != null)
+			return index.playerNear(location, FinderMode.CYLINDER, searchDist, searchY);
+		
+		return scanPlayerNear(location, searchDist, searchY);
+	}
+	
+	/**
+	 * Checks every online player to see if they are near the location</br>
+	 * Used until the player index has been built
+	 * 
+	 * @See {@link #playerNear(Location, int, int)}
+	 */
+	public static boolean scanPlayerNear(Location location, int searchDist, int searchY)
 	{		
 		// Fetch the entities location and a location object for ploc
 		Location pLoc = LocationCache.getCachedLocation();
@@ -241,13 +280,31 @@ public class PlayerFinder
 			// Then check the if the height difference is small enough
 			// Return true as soon as we find a player which matches these requirements
 			if (FinderMode.CYLINDER.withinRange(location, pLoc, searchDist, searchY))
+			{
+				LocationCache.release(pLoc);
 				return true;
+			}
 		}
 		
+		LocationCache.release(pLoc);
+		
 		// Return false if no nearby player was found
 		return false;
 	}
 	
+	/**
+	 * Fetches the player index if it is ready to be used
+	 * 
+	 * @return The player index or null if it has not been built yet
+	 */
+	private static PlayerIndex getPlayerIndex()
+	{
+		P p = P.p();
+		PlayerIndex index = p != null ? p.getPlayerIndex() : null;
+		
+		return index != null && index.isReady() ? index : null;
+	}
+	
 	public static class FinderModeConfig extends AbstractConfig
 	{
 		public final FinderMode mode;
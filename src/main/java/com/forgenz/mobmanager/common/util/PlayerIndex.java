@@ -0,0 +1,212 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+
+package com.forgenz.mobmanager.common.util;
+
+import java.util.Collection;
+import java.util.HashMap;
+
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import com.forgenz.mobmanager.P;
+import com.forgenz.mobmanager.common.util.PlayerFinder.FinderMode;
+import com.forgenz.mobmanager.limiter.config.LimiterConfig;
+
+/**
+ * Keeps a grid of player locations for each world which is rebuilt once per tick</br>
+ * Player searches only check the players inside cells which overlap the search area
+ * <p>
+ * Each rebuild creates a new grid which is never modified again, so searches can
+ * safely be run from asynchronous tasks
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class PlayerIndex extends BukkitRunnable
+{
+	/** Cells are 64x64 blocks (4x4 chunks) */
+	public static final int CELL_SHIFT = 6;
+	
+	private volatile HashMap<World, LongObjectMap<IndexedPlayer>> worlds = null;
+	private volatile int indexedPlayers = 0;
+	
+	/**
+	 * Rebuilds the index
+	 */
+	@Override
+	public void run()
+	{
+		rebuild(P.p().getServer().getOnlinePlayers());
+	}
+	
+	/**
+	 * Rebuilds the index using the given players
+	 * 
+	 * @param players The players to index
+	 */
+	public void rebuild(Player[] players)
+	{
+		HashMap<World, LongObjectMap<IndexedPlayer>> worlds = new HashMap<World, LongObjectMap<IndexedPlayer>>();
+		int indexedPlayers = 0;
+		
+		for (Player player : players)
+		{
+			// Skip the player if they are in creative mode (And we should be skipping them)
+			if (LimiterConfig.ignoreCreativePlayers && player.getGameMode() == GameMode.CREATIVE)
+				continue;
+			
+			Location loc = player.getLocation();
+			
+			// Fetch the grid for the players world
+			LongObjectMap<IndexedPlayer> cells = worlds.get(loc.getWorld());
+			if (cells == null)
+				worlds.put(loc.getWorld(), cells = new LongObjectMap<IndexedPlayer>());
+			
+			// Add the player to the front of the cells list
+			long key = LongObjectMap.key(loc.getBlockX() >> CELL_SHIFT, loc.getBlockZ() >> CELL_SHIFT);
+			cells.put(key, new IndexedPlayer(player, loc, cells.get(key)));
+			++indexedPlayers;
+		}
+		
+		this.indexedPlayers = indexedPlayers;
+		this.worlds = worlds;
+	}
+	
+	/**
+	 * Checks if the index has been built at least once
+	 */
+	public boolean isReady()
+	{
+		return worlds != null;
+	}
+	
+	/**
+	 * Fetches the number of players in the index
+	 */
+	public int getIndexedPlayerCount()
+	{
+		return indexedPlayers;
+	}
+	
+	/**
+	 * Checks if there is a player within range of the location
+	 * 
+	 * @param loc The center of the search
+	 * @param mode The mode in which to search for players
+	 * @param radiusSquared The radius squared in which we are checking for players
+	 * @param height The height difference between the center and the player (Only for CYLINDER FinderMode)
+	 * 
+	 * @return True if a player was found
+	 */
+	public boolean playerNear(Location loc, FinderMode mode, int radiusSquared, int height)
+	{
+		return search(loc, mode, radiusSquared, height, null);
+	}
+	
+	/**
+	 * Fetches all nearby players and adds them to the player collection
+	 * 
+	 * @see #playerNear(Location, FinderMode, int, int)
+	 * 
+	 * @return The players argument
+	 */
+	public <T extends Collection<Player>> T findNearbyPlayers(Location loc, FinderMode mode, int radiusSquared, int height, T players)
+	{
+		search(loc, mode, radiusSquared, height, players);
+		return players;
+	}
+	
+	/**
+	 * Checks each cell which overlaps the search area for players
+	 * 
+	 * @param players If null the search stops at the first player found
+	 * 
+	 * @return True if a player was found
+	 */
+	private boolean search(Location loc, FinderMode mode, int radiusSquared, int height, Collection<Player> players)
+	{
+		HashMap<World, LongObjectMap<IndexedPlayer>> worlds = this.worlds;
+		
+		if (worlds == null)
+			return false;
+		
+		LongObjectMap<IndexedPlayer> cells = worlds.get(loc.getWorld());
+		
+		// No players in the world
+		if (cells == null)
+			return false;
+		
+		int radius = (int) Math.ceil(Math.sqrt(radiusSquared));
+		int minX = (loc.getBlockX() - radius) >> CELL_SHIFT, maxX = (loc.getBlockX() + radius) >> CELL_SHIFT;
+		int minZ = (loc.getBlockZ() - radius) >> CELL_SHIFT, maxZ = (loc.getBlockZ() + radius) >> CELL_SHIFT;
+		
+		boolean found = false;
+		
+		for (int x = minX; x <= maxX; ++x)
+		{
+			for (int z = minZ; z <= maxZ; ++z)
+			{
+				for (IndexedPlayer p = cells.get(x, z); p != null; p = p.next)
+				{
+					if (!mode.withinRange(loc, p.location, radiusSquared, height))
+						continue;
+					
+					if (players == null)
+						return true;
+					
+					players.add(p.player);
+					found = true;
+				}
+			}
+		}
+		
+		return found;
+	}
+	
+	/**
+	 * A player and their location when the index was built
+	 */
+	private static class IndexedPlayer
+	{
+		final Player player;
+		final Location location;
+		/** The next player in the same cell */
+		final IndexedPlayer next;
+		
+		IndexedPlayer(Player player, Location location, IndexedPlayer next)
+		{
+			this.player = player;
+			this.location = location;
+			this.next = next;
+		}
+	}
+}
@@ -30,12 +30,14 @@ package com.forgenz.mobmanager.common.util;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.bukkit.Bukkit;
 import org.bukkit.ChunkSnapshot;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
+import org.bukkit.block.Biome;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 
@@ -43,6 +45,21 @@ import com.forgenz.mobmanager.P;
 
 public class RandomLocationGen
 {
+	/** Number of directions in the trig tables, must be a power of 2 */
+	private static final int TRIG_TABLE_SIZE = 4096;
+	private static final double[] COS_TABLE = new double[TRIG_TABLE_SIZE];
+	private static final double[] SIN_TABLE = new double[TRIG_TABLE_SIZE];
+	
+	static
+	{
+		for (int i = 0; i < TRIG_TABLE_SIZE; ++i)
+		{
+			double theta = 2 * Math.PI * i / TRIG_TABLE_SIZE;
+			COS_TABLE[i] = Math.cos(theta);
+			SIN_TABLE[i] = Math.sin(theta);
+		}
+	}
+	
 	private static List<Integer> cacheList;
 	
 	/**
@@ -122,13 +139,13 @@ public class RandomLocationGen
 			}
 			
 			// Generate coordinates for Y
-			cacheLoc.setY(RandomUtil.i.nextInt(heightRange2) - heightRange + center.getBlockY() + 0.5);
+			cacheLoc.setY(RandomUtil.i().nextInt(heightRange2) - heightRange + center.getBlockY() + 0.5);
 				
 			// If the location is safe we can return the location
 			if ((!checkPlayers || !PlayerFinder.playerNear(cacheLoc, minRange, heightRange)) && findSafeY(cacheLoc, center.getBlockY(), heightRange, true))
 			{
 				// Generate a random Yaw/Pitch
-				cacheLoc.setYaw(RandomUtil.i.nextFloat() * 360.0F);
+				cacheLoc.setYaw(RandomUtil.i().nextFloat() * 360.0F);
 				cacheLoc.setPitch(0.0F);
 				return cacheLoc;
 			}
@@ -138,6 +155,149 @@ public class RandomLocationGen
 		return center;
 	}
 	
+	/**
+	 * Generates a random location around the center location</br>
+	 * All block lookups are done using the given chunk snapshots so this can be used from any thread
+	 * <p>
+	 * Every attempt is generated in one batch (See {@link CandidateBatch}),
+	 * then the attempts are checked in turn until a safe one is found
+	 * 
+	 * @param chunks Chunk snapshots keyed by {@link LongObjectMap#key(int, int)}
+	 * @param chunksTakenAt {@link System#nanoTime()} when the oldest of the snapshots was taken
+	 * @param columns Cache of standing Y levels for each column, or null to scan each column
+	 * @param cacheList Cached list used when searching for a safe Y location
+	 * @param filter Checked before searching each generated column, or null to accept every column
+	 * @param batch Reusable arrays for the generated locations
+	 * 
+	 * @return The location found, or center if no safe location was found
+	 */
+	public static Location getLocation(boolean circle, int spawnAttempts, Location center, int range, int minRange, int heightRange, Location cacheLoc, LongObjectMap<ChunkSnapshot> chunks, long chunksTakenAt, ColumnHeightCache columns, List<Integer> cacheList, LocationFilter filter, CandidateBatch batch)
+	{
+		// Make sure range is larger than minRange
+		if (range < minRange)
+		{
+			range = range ^ minRange;
+			minRange = range ^ minRange;
+			range = range ^ minRange;
+		}
+		
+		// Height range must be at least 1
+		if (heightRange < 0)
+			heightRange = 1;
+		
+		// Make sure range is bigger than minRange
+		if (range == minRange)
+			++range;
+		
+		// Generate every attempt at once and find the first one which is safe
+		generateCandidates(batch, spawnAttempts, circle, center.getBlockX(), center.getBlockZ(), range, minRange, filter);
+		int pick = findSafeCandidate(batch, center.getWorld(), chunks, chunksTakenAt, columns, center.getBlockY(), heightRange, cacheList);
+		
+		// If no safe location was found in a reasonable time frame just return the center
+		if (pick < 0)
+			return center;
+		
+		cacheLoc.setWorld(center.getWorld());
+		cacheLoc.setX(batch.x[pick] + 0.5);
+		cacheLoc.setY(batch.y[pick]);
+		cacheLoc.setZ(batch.z[pick] + 0.5);
+		
+		// Generate a random Yaw/Pitch
+		cacheLoc.setYaw(RandomUtil.i().nextFloat() * 360.0F);
+		cacheLoc.setPitch(0.0F);
+		return cacheLoc;
+	}
+	
+	/**
+	 * Fills the batch with random X/Z block coordinates around the center</br>
+	 * Circular locations use the same distribution as {@link #getCircularLocation(int, int, double, double, Location)}
+	 * but look up the direction in a precomputed table
+	 * 
+	 * @param batch The batch to fill, any previous candidates are cleared
+	 * @param count The number of locations to generate
+	 * @param filter Locations rejected by the filter are not added, or null to add every location
+	 */
+	public static void generateCandidates(CandidateBatch batch, int count, boolean circle, int centerX, int centerZ, int range, int minRange, LocationFilter filter)
+	{
+		Random random = RandomUtil.i();
+		batch.ensureCapacity(count);
+		batch.size = 0;
+		
+		int rangeDiff = range - minRange;
+		
+		for (int i = 0; i < count; ++i)
+		{
+			int x, z;
+			if (circle)
+			{
+				int angle = random.nextInt(TRIG_TABLE_SIZE);
+				double radius = random.nextDouble() * rangeDiff + minRange;
+				
+				x = Location.locToBlock(radius * COS_TABLE[angle]) + centerX;
+				z = Location.locToBlock(radius * SIN_TABLE[angle]) + centerZ;
+			}
+			else
+			{
+				Location loc = getSquareLocation(centerX, centerZ, range, minRange, batch.squareLoc);
+				x = loc.getBlockX();
+				z = loc.getBlockZ();
+			}
+			
+			// Skip columns the filter doesn't want before doing any block lookups
+			if (filter != null && !filter.accept(x, z))
+				continue;
+			
+			batch.x[batch.size] = x;
+			batch.z[batch.size] = z;
+			++batch.size;
+		}
+	}
+	
+	/**
+	 * Finds the first candidate in the batch with a safe Y level</br>
+	 * Candidates are checked in the order they were generated, so the pick is
+	 * as random as checking each attempt in turn. The search stops at the first
+	 * safe candidate so no more columns are checked than necessary
+	 * 
+	 * @return The index of the safe candidate (Its Y is stored in the batch), or -1 if none were safe
+	 */
+	public static int findSafeCandidate(CandidateBatch batch, World world, LongObjectMap<ChunkSnapshot> chunks, long chunksTakenAt, ColumnHeightCache columns, int centerY, int heightRange, List<Integer> cacheList)
+	{
+		long lastKey = 0L;
+		ChunkSnapshot chunk = null;
+		
+		for (int i = 0; i < batch.size; ++i)
+		{
+			int x = batch.x[i], z = batch.z[i];
+			
+			// Only look up the snapshot when we move into a new chunk
+			long key = LongObjectMap.key(x >> 4, z >> 4);
+			if (chunk == null || key != lastKey)
+			{
+				chunk = chunks.get(key);
+				lastKey = key;
+			}
+			
+			// Locations outside of the snapshots are never safe
+			if (chunk == null)
+				continue;
+			
+			int y;
+			if (columns != null)
+				y = pickSafeY(columns.getHeights(world, chunk, chunksTakenAt, x & 15, z & 15), centerY, heightRange);
+			else
+				y = pickSafeY(chunk, x & 15, z & 15, centerY, heightRange, cacheList);
+			
+			if (y >= 0)
+			{
+				batch.y[i] = y;
+				return i;
+			}
+		}
+		
+		return -1;
+	}
+	
 	/**
 	 * Finds a safe Y location at the given x/z location
 	 * @return true if a safe location was found
@@ -207,7 +367,7 @@ public class RandomLocationGen
 			return false;
 		
 		// Fetch a random location
-		location.setY(cacheList.get(RandomUtil.i.nextInt(cacheList.size())));		
+		location.setY(cacheList.get(RandomUtil.i().nextInt(cacheList.size())));		
 		cacheList.clear();
 		
 		return true;	
@@ -218,8 +378,28 @@ public class RandomLocationGen
 	 * Uses a chunk snapshot for speed
 	 * @return true if a safe location was found
 	 */
-	@SuppressWarnings("deprecation")
 	public static boolean findSafeY(ChunkSnapshot chunk, Location location, int centerY, int heightRange, List<Integer> cacheList)
+	{
+		int y = pickSafeY(chunk, location.getBlockX() & 15, location.getBlockZ() & 15, centerY, heightRange, cacheList);
+		
+		// If there are no safe locations we return false :(
+		if (y < 0)
+			return false;
+		
+		location.setY(y);
+		return true;
+	}
+	
+	/**
+	 * Picks a random safe Y level in a column of a chunk snapshot
+	 * 
+	 * @param x The X coordinate within the chunk
+	 * @param z The Z coordinate within the chunk
+	 * 
+	 * @return The Y level, or -1 if there are no safe levels
+	 */
+	@SuppressWarnings("deprecation")
+	private static int pickSafeY(ChunkSnapshot chunk, int x, int z, int centerY, int heightRange, List<Integer> cacheList)
 	{
 		int foundAir = 0;
 		
@@ -227,18 +407,12 @@ public class RandomLocationGen
 		int startY = centerY + heightRange;
 		int endY = centerY - heightRange;
 		
-		// Validate max and min Y locations
-		if (startY > 256)
-			startY = 256;
+		// Validate max and min Y locations (Snapshots only go up to 255)
+		if (startY > 255)
+			startY = 255;
 		if (endY < 0)
 			endY = 0;
 		
-		int x = location.getBlockX() % 16, z = location.getBlockZ() % 16;
-		if (x < 0)
-			x += 16;
-		if (z < 0)
-			z += 16;
-		
 		// Find sets of Y's which are safe
 		for (; startY > endY; --startY)
 		{
@@ -254,15 +428,66 @@ public class RandomLocationGen
 			}
 		}
 		
-		// If there are no safe locations we return false :(
 		if (cacheList.isEmpty())
-			return false;
+			return -1;
 		
 		// Fetch a random location
-		location.setY(cacheList.get(RandomUtil.i.nextInt(cacheList.size())));		
+		int y = cacheList.get(RandomUtil.i().nextInt(cacheList.size()));
 		cacheList.clear();
 		
-		return true;	
+		return y;
+	}
+	
+	/**
+	 * Picks a random standing Y level which is within range of the center</br>
+	 * Gives the same results as scanning the column with a chunk snapshot
+	 * 
+	 * @param heights The standing Y levels of the column from {@link ColumnHeightCache}
+	 * 
+	 * @return true if a safe location was found
+	 */
+	public static boolean findSafeY(short[] heights, Location location, int centerY, int heightRange)
+	{
+		int y = pickSafeY(heights, centerY, heightRange);
+		
+		// If there are no safe locations we return false :(
+		if (y < 0)
+			return false;
+		
+		location.setY(y);
+		return true;
+	}
+	
+	/**
+	 * Picks a random standing Y level which is within range of the center
+	 * 
+	 * @return The Y level, or -1 if there are no levels in range
+	 */
+	private static int pickSafeY(short[] heights, int centerY, int heightRange)
+	{
+		// The block below and the block above the mob must be within range
+		int minY = Math.max(centerY - heightRange, 0) + 2;
+		int maxY = Math.min(centerY + heightRange, 255) - 1;
+		
+		int count = 0;
+		for (short y : heights)
+		{
+			if (y >= minY && y <= maxY)
+				++count;
+		}
+		
+		if (count == 0)
+			return -1;
+		
+		// Fetch a random location
+		int pick = RandomUtil.i().nextInt(count);
+		for (short y : heights)
+		{
+			if (y >= minY && y <= maxY && pick-- == 0)
+				return y;
+		}
+		
+		return -1;
 	}
 	
 	public static boolean isTallLocation(Block b)
@@ -282,6 +507,83 @@ public class RandomLocationGen
 				&& isSafeBlock(b.getRelative(BlockFace.NORTH_WEST));
 	}
 	
+	/**
+	 * Checks if there is room above the location for a tall mob</br>
+	 * Uses chunk snapshots so it can be used from any thread
+	 */
+	public static boolean isTallLocation(LongObjectMap<ChunkSnapshot> chunks, int x, int y, int z)
+	{
+		return isSafeMaterial(getMaterial(chunks, x, y + 2, z));
+	}
+	
+	/**
+	 * Checks if the blocks surrounding the location have room for a wide mob</br>
+	 * Uses chunk snapshots so it can be used from any thread
+	 */
+	public static boolean isWideLocation(LongObjectMap<ChunkSnapshot> chunks, int x, int y, int z)
+	{
+		for (int dX = -1; dX <= 1; ++dX)
+		{
+			for (int dZ = -1; dZ <= 1; ++dZ)
+			{
+				if ((dX != 0 || dZ != 0) && !isSafeMaterial(getMaterial(chunks, x + dX, y, z + dZ)))
+					return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Fetches the material of a block from chunk snapshots
+	 * 
+	 * @return The blocks material, or null if the block is not inside a snapshot
+	 */
+	@SuppressWarnings("deprecation")
+	public static Material getMaterial(LongObjectMap<ChunkSnapshot> chunks, int x, int y, int z)
+	{
+		if (y < 0)
+			return null;
+		if (y > 255)
+			return Material.AIR;
+		
+		ChunkSnapshot chunk = chunks.get(x >> 4, z >> 4);
+		return chunk != null ? Material.getMaterial(chunk.getBlockTypeId(x & 15, y, z & 15)) : null;
+	}
+	
+	/**
+	 * Fetches the light level of a block from chunk snapshots
+	 * 
+	 * @param skyDarkness The amount the sky light is reduced by at the current time
+	 * 
+	 * @return The light level, or 0 if the block is not inside a snapshot
+	 */
+	public static int getLightLevel(LongObjectMap<ChunkSnapshot> chunks, int x, int y, int z, int skyDarkness)
+	{
+		if (y < 0)
+			return 0;
+		if (y > 255)
+			return Math.max(15 - skyDarkness, 0);
+		
+		ChunkSnapshot chunk = chunks.get(x >> 4, z >> 4);
+		if (chunk == null)
+			return 0;
+		
+		x &= 15;
+		z &= 15;
+		return Math.max(chunk.getBlockSkyLight(x, y, z) - skyDarkness, chunk.getBlockEmittedLight(x, y, z));
+	}
+	
+	/**
+	 * Fetches the biome at the given x/z location from chunk snapshots
+	 * 
+	 * @return The biome, or null if the location is not inside a snapshot
+	 */
+	public static Biome getBiome(LongObjectMap<ChunkSnapshot> chunks, int x, int z)
+	{
+		ChunkSnapshot chunk = chunks.get(x >> 4, z >> 4);
+		return chunk != null ? chunk.getBiome(x & 15, z & 15) : null;
+	}
+	
 	/**
 	 * Generates a random location which is circular around the center
 	 */
@@ -295,10 +597,10 @@ public class RandomLocationGen
 		// Calculate the difference between the max and min range
 		double rangeDiff = range - minRange;
 		// Calculate a random direction for the X/Z values
-		double theta = 2 * Math.PI * RandomUtil.i.nextDouble();
+		double theta = 2 * Math.PI * RandomUtil.i().nextDouble();
 		
 		// Generate a random radius
-		double radius = RandomUtil.i.nextDouble() * rangeDiff + minRange;
+		double radius = RandomUtil.i().nextDouble() * rangeDiff + minRange;
 		
 		// Set the X/Z coordinates
 		double trig = Math.cos(theta);
@@ -322,7 +624,7 @@ public class RandomLocationGen
 		// Calculate the sum of all the block deviations from the center between minRange and range
 		int totalBlockCount = (range * (++range) - minRange * (minRange + 1)) >> 1;
 		// Fetch a random number of blocks
-		int blockCount = totalBlockCount - RandomUtil.i.nextInt(totalBlockCount);
+		int blockCount = totalBlockCount - RandomUtil.i().nextInt(totalBlockCount);
 		
 		// While the block deviation from the center for the given range is
 		// less than the number of blocks left we remove a layer of blocks
@@ -330,10 +632,10 @@ public class RandomLocationGen
 			blockCount -= --range;
 		
 		// Pick a random location on the range line
-		int lineLoc = RandomUtil.i.nextInt(range << 1);
+		int lineLoc = RandomUtil.i().nextInt(range << 1);
 		// Choose a line (North/East/West/South lines)
 		// Then set the X/Z coordinates
-		switch (RandomUtil.i.nextInt(4))
+		switch (RandomUtil.i().nextInt(4))
 		{
 		// East Line going North
 		case 0:
@@ -371,6 +673,9 @@ public class RandomLocationGen
 	
 	public static boolean isSafeMaterial(Material mat)
 	{
+		if (mat == null)
+			return false;
+		
 		switch (mat)
 		{
 		case AIR:
@@ -385,4 +690,67 @@ public class RandomLocationGen
 			return false;
 		}
 	}
+	
+	/**
+	 * Reusable arrays of candidate spawn locations</br>
+	 * Each thread should use its own batch
+	 */
+	public static class CandidateBatch
+	{
+		private int[] x, y, z;
+		private int size;
+		private final Location squareLoc = new Location(null, 0.0, 0.0, 0.0);
+		
+		public CandidateBatch(int capacity)
+		{
+			capacity = Math.max(capacity, 1);
+			x = new int[capacity];
+			y = new int[capacity];
+			z = new int[capacity];
+		}
+		
+		private void ensureCapacity(int capacity)
+		{
+			if (capacity <= x.length)
+				return;
+			
+			x = new int[capacity];
+			y = new int[capacity];
+			z = new int[capacity];
+		}
+		
+		/**
+		 * @return The number of candidates in the batch
+		 */
+		public int size()
+		{
+			return size;
+		}
+		
+		public int getX(int i)
+		{
+			return x[i];
+		}
+		
+		public int getY(int i)
+		{
+			return y[i];
+		}
+		
+		public int getZ(int i)
+		{
+			return z[i];
+		}
+	}
+	
+	/**
+	 * Decides if a generated column can be used before it is searched for a safe Y location
+	 */
+	public interface LocationFilter
+	{
+		/**
+		 * @return True if the column at the given block coordinates can be used
+		 */
+		boolean accept(int x, int z);
+	}
 }
@@ -30,17 +30,126 @@
 package com.forgenz.mobmanager.common.util;
 
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Provides each thread with its own random number generator so the
+ * spawn finder threads do not fight over a single shared seed</br>
+ * <p>
+ * By default each generator is seeded randomly. If a seed is set using
+ * {@link #setSeed(long)} each thread is given a generator split from
+ * that seed, so spawns can be reproduced.
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
 public class RandomUtil
 {
-	public static final Random i = new Random();
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	
+	/**
+	 * Seeds the next thread generator, advanced by GOLDEN_GAMMA for each generator created
+	 */
+	private static final AtomicLong seeder = new AtomicLong(mix(System.nanoTime()) ^ mix(System.currentTimeMillis()));
+	
+	private static volatile ThreadLocal<Random> generators = createGenerators();
 	
 	private RandomUtil() {}
 	
+	/**
+	 * Fetches the current threads random number generator</br>
+	 * The generator must not be shared with other threads
+	 */
+	public static Random i()
+	{
+		return generators.get();
+	}
+	
+	/**
+	 * Sets the seed which every threads generator is split from</br>
+	 * Generators already created are replaced the next time they are fetched
+	 * 
+	 * @param seed The seed
+	 */
+	public static void setSeed(long seed)
+	{
+		seeder.set(seed);
+		generators = createGenerators();
+	}
+	
+	/**
+	 * Creates a new generator split from the current threads generator</br>
+	 * Useful for handing a reproducible generator to another task
+	 */
+	public static Random split()
+	{
+		return new SplitRandom(i().nextLong());
+	}
+	
 	public static <T> T getRandomElement(T[] arr)
 	{
 		if (arr.length == 0)
 			return null;
-		return arr[i.nextInt(arr.length)];
+		return arr[i().nextInt(arr.length)];
+	}
+	
+	private static ThreadLocal<Random> createGenerators()
+	{
+		return new ThreadLocal<Random>()
+		{
+			@Override
+			protected Random initialValue()
+			{
+				return new SplitRandom(mix(seeder.addAndGet(GOLDEN_GAMMA)));
+			}
+		};
+	}
+	
+	/**
+	 * Mixes the bits of a 64 bit value (SplitMix64 finaliser)
+	 */
+	private static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * A SplitMix64 generator</br>
+	 * Unlike java.util.Random the state is not atomic, so instances must
+	 * only be used by one thread
+	 */
+	private static class SplitRandom extends Random
+	{
+		private static final long serialVersionUID = 1L;
+		
+		/** Set in setSeed() which is called by Random's constructor */
+		private long state;
+		
+		private SplitRandom(long seed)
+		{
+			super(seed);
+		}
+		
+		@Override
+		public void setSeed(long seed)
+		{
+			state = seed;
+			// Random caches a gaussian value, clear it
+			super.setSeed(seed);
+		}
+		
+		@Override
+		protected int next(int bits)
+		{
+			return (int) (nextLong() >>> (64 - bits));
+		}
+		
+		@Override
+		public long nextLong()
+		{
+			return mix(state += GOLDEN_GAMMA);
+		}
 	}
 }
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.common.util;
+
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+
+import com.forgenz.mobmanager.abilities.abilities.AbilitySet;
+import com.forgenz.mobmanager.spawner.config.Region;
+
+/**
+ * Describes the spawns MobManager or other plugins are about to cause</br>
+ * Contexts are opened and closed around the spawns they apply to and are
+ * kept in a stack for each thread, so spawns which happen while another
+ * spawn is being handled do not see the wrong context.</br>
+ * </br>
+ * Usage:
+ * <pre>
+ * SpawnContext context = SpawnContext.open().ignoreLimiter();
+ * try
+ * {
+ *     // Spawn mobs
+ * }
+ * finally
+ * {
+ *     context.close();
+ * }
+ * </pre>
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class SpawnContext implements AutoCloseable
+{
+	private static final ThreadLocal<SpawnContext> current = new ThreadLocal<SpawnContext>();
+	/** Flags for the next spawn set through the old ignoreNextSpawn methods */
+	private static final ThreadLocal<SpawnContext> nextSpawn = new ThreadLocal<SpawnContext>();
+	
+	private final SpawnContext previous;
+	private final Thread thread;
+	private boolean closed;
+	
+	private boolean ignoreLimiter, ignoreAbilities, bonusSpawn;
+	private ExtendedEntityType type;
+	private AbilitySet abilitySet;
+	private Player player;
+	private Region region;
+	
+	private SpawnContext(SpawnContext previous)
+	{
+		this.previous = previous;
+		this.thread = Thread.currentThread();
+		
+		// Bonus mobs never spawn more bonus mobs
+		this.bonusSpawn = previous != null && previous.bonusSpawn;
+	}
+	
+	/**
+	 * Opens a new context for spawns in this thread</br>
+	 * The context must be closed by the same thread once the spawns are done
+	 * 
+	 * @return The new context
+	 */
+	public static SpawnContext open()
+	{
+		SpawnContext context = new SpawnContext(current.get());
+		current.set(context);
+		return context;
+	}
+	
+	/**
+	 * Fetches the innermost open context of this thread
+	 * 
+	 * @return The context or null if there is none
+	 */
+	public static SpawnContext current()
+	{
+		return current.get();
+	}
+	
+	/**
+	 * Fetches the flags applied to the next spawn in this thread only</br>
+	 * Kept for the ignoreNextSpawn methods in {@link com.forgenz.mobmanager.common.integration.PluginIntegration}
+	 */
+	public static SpawnContext nextSpawn()
+	{
+		SpawnContext context = nextSpawn.get();
+		
+		if (context == null)
+		{
+			context = new SpawnContext(null);
+			nextSpawn.set(context);
+		}
+		
+		return context;
+	}
+	
+	/**
+	 * Fetches the next spawn flags if any have been set
+	 */
+	public static SpawnContext peekNextSpawn()
+	{
+		return nextSpawn.get();
+	}
+	
+	/**
+	 * Clears the flags for the next spawn once a spawn has been handled
+	 */
+	public static void resetNextSpawn()
+	{
+		nextSpawn.remove();
+	}
+	
+	/**
+	 * Closes the context</br>
+	 * Any contexts opened inside this one which were not closed are closed as well
+	 * 
+	 * @throws IllegalStateException If called from another thread or the context is not open
+	 */
+	@Override
+	public void close()
+	{
+		if (thread != Thread.currentThread())
+			throw new IllegalStateException("SpawnContexts must be closed by the thread which opened them");
+		
+		if (closed)
+			return;
+		
+		SpawnContext context = current.get();
+		
+		// Make sure this context is still open
+		while (context != null && context != this)
+			context = context.previous;
+		
+		if (context == null)
+			throw new IllegalStateException("SpawnContext is not open");
+		
+		// Close every context down to and including this one
+		for (context = current.get(); context != previous; context = context.previous)
+			context.closed = true;
+		
+		if (previous != null)
+			current.set(previous);
+		else
+			current.remove();
+	}
+	
+	/**
+	 * Stops the limiter from limiting spawns in this context
+	 */
+	public SpawnContext ignoreLimiter()
+	{
+		ignoreLimiter = true;
+		return this;
+	}
+	
+	/**
+	 * Stops the abilities component from adding abilities to mobs spawned in this context
+	 */
+	public SpawnContext ignoreAbilities()
+	{
+		ignoreAbilities = true;
+		return this;
+	}
+	
+	/**
+	 * Stops every MobManager component from handling spawns in this context
+	 */
+	public SpawnContext ignoreAll()
+	{
+		ignoreLimiter = ignoreAbilities = true;
+		return this;
+	}
+	
+	/**
+	 * Marks the spawns as bonus spawns from abilities
+	 */
+	public SpawnContext bonusSpawn()
+	{
+		bonusSpawn = true;
+		return this;
+	}
+	
+	/**
+	 * Sets the type of mob being spawned</br>
+	 * Used instead of checking the mobs type during the spawn event, as
+	 * skeleton/horse data is only set once the mob has spawned
+	 */
+	public SpawnContext type(ExtendedEntityType type)
+	{
+		this.type = type;
+		return this;
+	}
+	
+	/**
+	 * Sets the AbilitySet the spawned mobs will be given</br>
+	 * The abilities component leaves the mobs to the caller, which adds the set once they have spawned
+	 */
+	public SpawnContext abilitySet(AbilitySet abilitySet)
+	{
+		this.abilitySet = abilitySet;
+		return this;
+	}
+	
+	/**
+	 * Sets the player the spawns are for
+	 */
+	public SpawnContext player(Player player)
+	{
+		this.player = player;
+		return this;
+	}
+	
+	/**
+	 * Sets the spawner region the spawns are from
+	 */
+	public SpawnContext region(Region region)
+	{
+		this.region = region;
+		return this;
+	}
+	
+	public boolean ignoresLimiter()
+	{
+		return ignoreLimiter;
+	}
+	
+	public boolean ignoresAbilities()
+	{
+		return ignoreAbilities || abilitySet != null;
+	}
+	
+	public boolean isBonusSpawn()
+	{
+		return bonusSpawn;
+	}
+	
+	public AbilitySet getAbilitySet()
+	{
+		return abilitySet;
+	}
+	
+	/**
+	 * @return The player the spawns are for, or null if they are not for a player
+	 */
+	public Player getPlayer()
+	{
+		return player;
+	}
+	
+	/**
+	 * @return The spawner region the spawns are from, or null if they are not from the spawner
+	 */
+	public Region getRegion()
+	{
+		return region;
+	}
+	
+	/**
+	 * Fetches the type of the mob if it was set for this context
+	 * 
+	 * @param entity The entity which spawned
+	 * 
+	 * @return The type or null if it was not set or does not match the entity
+	 */
+	public ExtendedEntityType getType(LivingEntity entity)
+	{
+		return type != null && type.getBukkitEntityType() == entity.getType() ? type : null;
+	}
+	
+	/**
+	 * Sets the flags used by the old ignoreNextSpawn methods
+	 */
+	public void setIgnoreLimiter(boolean value)
+	{
+		ignoreLimiter = value;
+	}
+	
+	public void setIgnoreAbilities(boolean value)
+	{
+		ignoreAbilities = value;
+	}
+}
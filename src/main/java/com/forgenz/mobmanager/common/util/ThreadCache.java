@@ -28,50 +28,48 @@
 
 package com.forgenz.mobmanager.common.util;
 
-import java.util.WeakHashMap;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
-
+/**
+ * Stores one object per thread</br>
+ * Backed by a ThreadLocal so fetching a threads object never needs a lock.
+ * Objects are released with their thread when it dies.
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ * @param <T> The type of object cached
+ */
 public class ThreadCache<T>
 {
-	private final WeakHashMap<Thread, T> map;
-	private final ReentrantReadWriteLock rwLock;
-	private Class<T> clazz;
+	/**
+	 * Replaced on clear() so every threads object is dropped at once
+	 */
+	private volatile ThreadLocal<T> local = new ThreadLocal<T>();
+	private volatile Class<T> clazz;
 	
 	public ThreadCache()
 	{
 		this(null);
 	}
 	
+	/**
+	 * @param clazz If not null new objects are created using the classes
+	 *        default constructor when a thread does not have one yet
+	 */
 	public ThreadCache(Class<T> clazz)
 	{
-		this.map = new WeakHashMap<Thread, T>();
-		rwLock = new ReentrantReadWriteLock();
 		this.clazz = clazz;
 	}
 	
 	public T get()
 	{
-		ReadLock lock = rwLock.readLock();
-		lock.lock();
-		
-		T t = null;
-		try
-		{
-			t = map.get(Thread.currentThread());
-		}
-		finally
-		{
-			lock.unlock();
-		}
+		ThreadLocal<T> local = this.local;
+		T t = local.get();
 		
 		if (t == null && clazz != null)
 		{
 			try
 			{
 				t = clazz.getConstructor().newInstance();
-				set(t);
+				local.set(t);
 			}
 			catch (Exception e)
 			{
@@ -83,29 +81,15 @@ public class ThreadCache<T>
 	
 	public void set(T t)
 	{
-		WriteLock lock = rwLock.writeLock();
-		lock.lock();
-		try
-		{
-			map.put(Thread.currentThread(), t);
-		}
-		finally
-		{
-			lock.unlock();
-		}
+		local.set(t);
 	}
 	
+	/**
+	 * Drops the objects of every thread</br>
+	 * Used when MobManager is reloaded
+	 */
 	public void clear()
 	{
-		WriteLock lock = rwLock.writeLock();
-		lock.lock();
-		try
-		{
-			map.clear();
-		}
-		finally
-		{
-			lock.unlock();
-		}
+		local = new ThreadLocal<T>();
 	}
 }
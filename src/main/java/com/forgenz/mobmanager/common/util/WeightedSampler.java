@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.common.util;
+
+import java.util.Random;
+
+/**
+ * Picks random indexes weighted by integer weights
+ * <p>
+ * Instances are alias tables (Vose's method) for distributions which don't
+ * change, giving O(1) picks. Weights are kept as integers so the table is exact.</br>
+ * The static methods pick from running totals using a binary search, for subsets
+ * which are filtered before each pick
+ * <p>
+ * Instances are never modified once created, so they are safe to use from any thread
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class WeightedSampler
+{
+	private final int[] probability;
+	private final int[] alias;
+	private final int totalWeight;
+	
+	/**
+	 * Builds an alias table for the given weights
+	 * 
+	 * @param weights The weight of each index, negative weights are treated as 0
+	 */
+	public WeightedSampler(int[] weights)
+	{
+		int n = weights.length;
+		probability = new int[n];
+		alias = new int[n];
+		
+		int total = 0;
+		for (int weight : weights)
+			total += Math.max(weight, 0);
+		totalWeight = total;
+		
+		if (n == 0 || total <= 0)
+			return;
+		
+		// Scale each weight by n so the average weight is 'total'
+		long[] scaled = new long[n];
+		int[] small = new int[n], large = new int[n];
+		int smallCount = 0, largeCount = 0;
+		
+		for (int i = 0; i < n; ++i)
+		{
+			scaled[i] = (long) Math.max(weights[i], 0) * n;
+			if (scaled[i] < total)
+				small[smallCount++] = i;
+			else
+				large[largeCount++] = i;
+		}
+		
+		// Fill each small column with part of a large column
+		while (smallCount > 0 && largeCount > 0)
+		{
+			int s = small[--smallCount];
+			int l = large[--largeCount];
+			
+			probability[s] = (int) scaled[s];
+			alias[s] = l;
+			
+			scaled[l] -= total - scaled[s];
+			if (scaled[l] < total)
+				small[smallCount++] = l;
+			else
+				large[largeCount++] = l;
+		}
+		
+		// Whatever is left fills its own column
+		while (largeCount > 0)
+		{
+			int l = large[--largeCount];
+			probability[l] = total;
+			alias[l] = l;
+		}
+		while (smallCount > 0)
+		{
+			int s = small[--smallCount];
+			probability[s] = total;
+			alias[s] = s;
+		}
+	}
+	
+	/**
+	 * Picks a random index
+	 * 
+	 * @return An index, or -1 if there are no indexes with a weight
+	 */
+	public int sample(Random random)
+	{
+		if (totalWeight <= 0)
+			return -1;
+		
+		int column = random.nextInt(probability.length);
+		return random.nextInt(totalWeight) < probability[column] ? column : alias[column];
+	}
+	
+	/**
+	 * @return The number of indexes in the table
+	 */
+	public int size()
+	{
+		return probability.length;
+	}
+	
+	/**
+	 * @return The sum of all the weights
+	 */
+	public int getTotalWeight()
+	{
+		return totalWeight;
+	}
+	
+	/**
+	 * Picks a random index from running totals of weights</br>
+	 * cumulative[i] must be the sum of the weights from 0 to i
+	 * 
+	 * @param cumulative The running totals
+	 * @param count The number of running totals to pick from
+	 * 
+	 * @return An index, or -1 if the total weight is 0
+	 */
+	public static int sample(Random random, int[] cumulative, int count)
+	{
+		if (count <= 0 || cumulative[count - 1] <= 0)
+			return -1;
+		
+		int value = random.nextInt(cumulative[count - 1]);
+		
+		// Find the first index whose running total is above the value
+		int low = 0, high = count - 1;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (cumulative[mid] > value)
+				high = mid;
+			else
+				low = mid + 1;
+		}
+		
+		return low;
+	}
+}
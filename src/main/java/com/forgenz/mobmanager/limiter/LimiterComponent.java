@@ -121,7 +121,7 @@ public class LimiterComponent extends MMComponent
 
 		// Start the despawner task
 		despawner = new MobDespawnTask();
-		despawner.runTaskTimer(P.p(), 1L, LimiterConfig.ticksPerDespawnScan);
+		despawner.runTaskTimer(P.p(), 1L, 1L);
 
 		// Setup animal protection
 		if (LimiterConfig.enableAnimalDespawning || LimiterConfig.enableAnimalTracking)
@@ -175,6 +175,11 @@ public class LimiterComponent extends MMComponent
 		return config;
 	}
 	
+	public MobDespawnTask getDespawner()
+	{
+		return despawner;
+	}
+	
 	public void addWorld(MMWorld world)
 	{
 		worlds.put(world.getWorld().getName().toLowerCase(), world);
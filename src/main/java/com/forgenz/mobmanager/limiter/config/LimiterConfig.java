@@ -70,7 +70,10 @@ public class LimiterConfig extends AbstractConfig
 	public static short despawnSearchHeight;
 	public static short flyingMobAditionalBlockDepth;
 	public static int ticksPerRecount;
+	public static boolean incrementalMobCounting;
+	public static int ticksPerReconcile;
 	public static int ticksPerDespawnScan;
+	public static long despawnScanBudgetNanos;
 	public static int minTicksLivedForDespawn;
 	
 	public static TSettingContainer<ExtendedEntityType> ignoredMobs;
@@ -139,10 +142,26 @@ public class LimiterConfig extends AbstractConfig
 		ticksPerRecount = cfg.getInt("TicksPerRecount", 600);
 		set(cfg, "TicksPerRecount", ticksPerRecount);
 		
+		/* ################ IncrementalMobCounting ################ */
+		incrementalMobCounting = cfg.getBoolean("IncrementalMobCounting", false);
+		set(cfg, "IncrementalMobCounting", incrementalMobCounting);
+		
+		ticksPerReconcile = cfg.getInt("TicksPerReconcile", 6000);
+		if (ticksPerReconcile < ticksPerRecount)
+			ticksPerReconcile = ticksPerRecount;
+		set(cfg, "TicksPerReconcile", ticksPerReconcile);
+		
 		/* ################ TicksPerDespawnScan ################ */
 		ticksPerDespawnScan = cfg.getInt("TicksPerDespawnScan", 300);
 		set(cfg, "TicksPerDespawnScan", ticksPerDespawnScan);
 		
+		/* ################ DespawnScanTimeBudget ################ */
+		double despawnScanTimeBudget = cfg.getDouble("DespawnScanTimeBudget", 0.5D);
+		if (despawnScanTimeBudget <= 0.0D)
+			despawnScanTimeBudget = 0.5D;
+		despawnScanBudgetNanos = (long) (despawnScanTimeBudget * 1000000.0D);
+		set(cfg, "DespawnScanTimeBudget", despawnScanTimeBudget);
+		
 		/* ################ MinTicksLivedForDespawn ################ */
 		minTicksLivedForDespawn = cfg.getInt("MinTicksLivedForDespawn", 100);
 		set(cfg, "MinTicksLivedForDespawn", minTicksLivedForDespawn);
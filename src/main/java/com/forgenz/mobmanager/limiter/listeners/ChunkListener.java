@@ -49,6 +49,7 @@ public class ChunkListener implements Listener
 			return;
 
 		world.incrementChunkCount();
+		world.addChunkMobs(event.getChunk());
 	}
 
 	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -61,5 +62,6 @@ public class ChunkListener implements Listener
 			return;
 		
 		world.decrementChunkCount();
+		world.removeChunkMobs(event.getChunk());
 	}
 }
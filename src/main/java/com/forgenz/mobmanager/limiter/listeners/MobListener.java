@@ -28,7 +28,6 @@
 
 package com.forgenz.mobmanager.limiter.listeners;
 
-import org.bukkit.entity.Entity;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
@@ -37,16 +36,16 @@ import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
 import org.bukkit.event.entity.EntityDeathEvent;
 
 import com.forgenz.mobmanager.MMComponent;
-import com.forgenz.mobmanager.P;
+import com.forgenz.mobmanager.common.listeners.CommonMobListener;
+import com.forgenz.mobmanager.common.listeners.CreatureSpawnContext;
 import com.forgenz.mobmanager.common.util.ExtendedEntityType;
-import com.forgenz.mobmanager.common.util.LocationCache;
 import com.forgenz.mobmanager.common.util.PlayerFinder;
 import com.forgenz.mobmanager.limiter.config.LimiterConfig;
 import com.forgenz.mobmanager.limiter.util.MobType;
 import com.forgenz.mobmanager.limiter.world.MMWorld;
 
 /**
- * Listens for and counts mob spawns </br>
+ * Limits and counts mob spawns </br>
  * Prevents mob spawns if mob limits have been hit
  * 
  * @author Michael McKnight (ShadowDog007)
@@ -54,27 +53,26 @@ import com.forgenz.mobmanager.limiter.world.MMWorld;
  */
 public class MobListener implements Listener
 {	
-	// Event listener methods
-	
 	/**
 	 * Checks mob limits to determine if the mob can spawn </br>
-	 * Only prevents natural spawns (Including for disabled mobs)
+	 * Only prevents natural spawns (Including for disabled mobs)</br>
+	 * Called by {@link CommonMobListener} at LOW priority
 	 */
-	@EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
-	public void onCreatureSpawn(final CreatureSpawnEvent event)
+	public static void checkSpawn(CreatureSpawnContext context)
 	{
 		// Check if we should ignore the following spawn
-		if (P.p().shouldIgnoreNextSpawn() || P.p().shouldLimiterIgnoreNextSpawn())
+		if (context.limiterIgnored)
 			return;
 		
-		if (!P.p().getPluginIntegration().canDespawn(event.getEntity()))
+		// Checks for spawn reasons we want to limit
+		if (!LimiterConfig.enabledSpawnReasons.contains(context.spawnReason))
 			return;
 		
-		// Checks for spawn reasons we want to limit
-		if (!LimiterConfig.enabledSpawnReasons.containsValue(event.getSpawnReason().toString()))
+		if (!context.canDespawn())
 			return;
 		
-		ExtendedEntityType eMobType = ExtendedEntityType.valueOf(event.getEntity());
+		CreatureSpawnEvent event = context.event;
+		ExtendedEntityType eMobType = context.type;
 		// Check if the entity is disabled
 		if (LimiterConfig.disabledMobs.contains(eMobType) || eMobType.hasParent() && LimiterConfig.disabledMobs.contains(eMobType.getParent()))
 		{
@@ -84,13 +82,13 @@ public class MobListener implements Listener
 		}
 		
 		// Checks if we can ignore the creature spawn
-		MobType mob = eMobType.getMobType(event.getEntity());
+		MobType mob = eMobType.getMobType(context.entity);
 		if (mob == null || LimiterConfig.ignoredMobs.contains(eMobType) || eMobType.hasParent() && LimiterConfig.ignoredMobs.contains(eMobType.getParent()))
 		{
 			return;
 		}
 
-		final MMWorld world = MMComponent.getLimiter().getWorld(event.getLocation().getWorld());
+		final MMWorld world = context.getLimiterWorld();
 		// If the world is not found we ignore the spawn
 		if (world == null)
 		{
@@ -101,7 +99,7 @@ public class MobListener implements Listener
 		// Animals need to be counted per chunk as well
 		if (mob == MobType.ANIMAL)
 		{
-			if (event.getSpawnReason() == SpawnReason.BREEDING || event.getSpawnReason() == SpawnReason.EGG)
+			if (context.spawnReason == SpawnReason.BREEDING || context.spawnReason == SpawnReason.EGG)
 			{
 				// If breeding limit is invalid (-ve) it is disabled
 				if (world.worldConf.breedingLimit >= 0)
@@ -110,11 +108,7 @@ public class MobListener implements Listener
 					// If the limit is 0 there is no point counting the mobs
 					if (world.worldConf.breedingLimit != 0)
 					{
-						for (Entity entity : LocationCache.getCachedLocation(event.getEntity()).getChunk().getEntities())
-						{
-							if (MobType.ANIMAL.belongs(entity))
-								++animalCount;
-						}
+						animalCount = world.getChunkMobCount(MobType.ANIMAL, event.getLocation());
 					}
 					// Cancels the event if the chunk is not within breeding limits
 					if (animalCount >= world.worldConf.breedingLimit)
@@ -131,47 +125,40 @@ public class MobListener implements Listener
 		// Try to update the number of mobs in this world
 		
 		// Check if we are within spawn limits
-		if (!world.withinMobLimit(eMobType, event.getEntity()))
+		if (!world.withinMobLimit(eMobType, context.entity))
 		{
 			event.setCancelled(true);
 			return;
 		}
 		
 		// Checks that there is a player within range of the creature spawn
-		if (!PlayerFinder.playerNear(world, event.getEntity(), PlayerFinder.mobFlys(event.getEntity())))
+		if (!PlayerFinder.playerNear(world, context.entity, PlayerFinder.mobFlys(context.entity)))
 		{
 			event.setCancelled(true);
 		}
 	}
 	
 	/**
-	 * Counts the mobs which spawn
+	 * Counts the mobs which spawn</br>
+	 * Called by {@link CommonMobListener} at MONITOR priority
 	 */
-	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-	public void countCreatureSpawns(CreatureSpawnEvent event)
+	public static void countSpawn(CreatureSpawnContext context)
 	{
 		// Fetch the world the creature spawned in
-		MMWorld world = MMComponent.getLimiter().getWorld(event.getLocation().getWorld());
+		MMWorld world = context.getLimiterWorld();
 		// Do nothing if the world is inactive
 		if (world == null)
 		{
 			return;
 		}
 		
-		// Fetch the entitys type
-		ExtendedEntityType eType = ExtendedEntityType.valueOf(event.getEntity());
-		
-		// If the mob is being ignored it is not counted towards the limits
-		if (LimiterConfig.ignoredMobs.contains(eType))
-			return;
-		
-		// Increment counts for the mob
-		world.incrementMobCount(eType, event.getEntity());
+		// Increment counts for the mob (Ignored mobs are not counted)
+		world.incrementMobCount(context.type, context.entity);
 	}
 	
 	/**
 	 * Decrements mob counts when a mob dies. </br>
-	 * <b>Note: <i>Does not seem to catch mob despawns so world.updateMobCount() recounts every tick</i></b>
+	 * <b>Note: <i>Does not catch mob despawns so world.updateMobCounts() recounts every so often</i></b>
 	 * @param event
 	 */
 	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -185,13 +172,7 @@ public class MobListener implements Listener
 			return;
 		}
 		
-		// Fetch the entity type
-		ExtendedEntityType eType = ExtendedEntityType.valueOf(event.getEntity());
-		// If the mob is being ignored it was not counted towards the limits
-		if (LimiterConfig.ignoredMobs.contains(eType) || eType.hasParent() && LimiterConfig.ignoredMobs.contains(eType.getParent()))
-			return;
-		
-		// Decrement counts for the entity
-		world.decrementMobCount(eType, event.getEntity());
+		// Decrement counts for the entity (Ignored mobs were not counted)
+		world.decrementMobCount(ExtendedEntityType.valueOf(event.getEntity()), event.getEntity());
 	}
 }
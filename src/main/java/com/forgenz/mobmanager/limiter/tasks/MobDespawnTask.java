@@ -29,9 +29,10 @@
 package com.forgenz.mobmanager.limiter.tasks;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.scheduler.BukkitRunnable;
@@ -39,17 +40,72 @@ import org.bukkit.scheduler.BukkitRunnable;
 import com.forgenz.mobmanager.MMComponent;
 import com.forgenz.mobmanager.P;
 import com.forgenz.mobmanager.common.util.ExtendedEntityType;
+import com.forgenz.mobmanager.common.util.LocationCache;
+import com.forgenz.mobmanager.common.util.PlayerIndex;
 import com.forgenz.mobmanager.limiter.config.LimiterConfig;
+import com.forgenz.mobmanager.limiter.util.DespawnSnapshot;
 import com.forgenz.mobmanager.limiter.util.MobDespawnCheck;
 import com.forgenz.mobmanager.limiter.world.MMWorld;
 
-
+/**
+ * Scans each world for mobs which should be despawned</br>
+ * Runs every tick and scans as many mobs as it can within a time budget,
+ * resuming from where it stopped on the next tick.</br>
+ * The budget shrinks when the server is lagging.
+ * <p>
+ * When UseAsyncDespawnScanner is enabled the scan is split into three stages.
+ * The main thread captures snapshots of the mobs, worker threads decide which
+ * mobs should be despawned from the snapshots and the main thread removes
+ * them in batches.
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
 public class MobDespawnTask extends BukkitRunnable
-{	
-	private AtomicBoolean running = new AtomicBoolean(false);
+{
 	/**
-	 * Sets up the despawn scan
+	 * Length of a tick when the server is running at 20 TPS
 	 */
+	private static final long TICK_NANOS = 50000000L;
+	
+	/**
+	 * The budget never shrinks below this fraction of the configured budget
+	 * so a pass can always complete
+	 */
+	private static final double MIN_BUDGET_FACTOR = 0.1;
+	
+	/* Tick time measurement */
+	private long lastRun = 0L;
+	private double averageTickNanos = TICK_NANOS;
+	
+	/* Scan cursor */
+	private MMWorld[] worlds = null;
+	private int worldIndex = 0;
+	private List<LivingEntity> entities = null;
+	private int entityIndex = 0;
+	private boolean cursorFinished = false;
+	private int ticksSincePassStart = 0;
+	
+	/* Async pipeline */
+	private final AtomicInteger pendingBatches = new AtomicInteger();
+	private final Queue<DespawnBatch> completedBatches = new ConcurrentLinkedQueue<DespawnBatch>();
+	
+	/* Statistics for the current pass */
+	private long passStart = 0L;
+	private int passTicks = 0;
+	private int passChecked = 0;
+	private int passDespawned = 0;
+	
+	/* Statistics */
+	private volatile long currentBudgetNanos = LimiterConfig.despawnScanBudgetNanos;
+	private volatile long totalChecked = 0L;
+	private volatile long totalScanNanos = 0L;
+	private volatile int passes = 0;
+	private volatile long lastPassMillis = 0L;
+	private volatile int lastPassTicks = 0;
+	private volatile int lastPassChecked = 0;
+	private volatile int lastPassDespawned = 0;
+	
 	@Override
 	public void run()
 	{
@@ -59,218 +115,315 @@ public class MobDespawnTask extends BukkitRunnable
 			return;
 		}
 		
-		// Make sure the task is not run more than once at a time
-		if (!running.compareAndSet(false, true))
-			return;
+		updateTickTime();
+		
+		++ticksSincePassStart;
+		
+		// Note the time we start
+		long start = System.nanoTime();
+		long budget = currentBudgetNanos = calculateBudget();
+		
+		// Remove the mobs the workers decided should be despawned
+		applyRemovals(start, budget);
+		checkPassFinished();
+		
+		// Start a new pass once enough ticks have passed since the last one started
+		if (worlds == null)
+		{
+			if (ticksSincePassStart < LimiterConfig.ticksPerDespawnScan)
+				return;
+			startPass();
+		}
 		
-		// Setups up each world, one per tick then starts the despawn scanner
-		(new DespawnSetup(running)).runTaskTimer(P.p(), 1L, 1L);
+		++passTicks;
+		
+		// Snapshots are only handed to workers once the player index can be searched from other threads
+		PlayerIndex index = P.p().getPlayerIndex();
+		boolean async = LimiterConfig.useAsyncDespawnScanner && index != null && index.isReady();
+		
+		scan(start, budget, async);
+		checkPassFinished();
+		
+		totalScanNanos += System.nanoTime() - start;
 	}
-}
-
-/**
- * This class is responsible for making sure the iterators are accessed while still knowing which world they belong to</br>
- * Used to make it easier to spread the task over multiple ticks
- * @author Michael McKnight (ShadowDog007)
- *
- */
-class EntityIterator
-{
-	private int currentIndex = 0;
-	private final ArrayList<MMWorld> worlds;
-	private final ArrayList<Iterator<LivingEntity>> iterators;
 	
 	/**
-	 * Sets up the iterators required
+	 * Keeps a moving average of the time between ticks
 	 */
-	EntityIterator()
+	private void updateTickTime()
 	{
-		// Fetch the worlds to be checked
-		MMWorld[] mmWorlds = MMComponent.getLimiter().getWorlds();
+		long now = System.nanoTime();
 		
-		worlds = new ArrayList<MMWorld>(mmWorlds.length);
-		iterators = new ArrayList<Iterator<LivingEntity>>(mmWorlds.length);
+		if (lastRun != 0L)
+			averageTickNanos = averageTickNanos * 0.9 + (now - lastRun) * 0.1;
 		
-		// Add each world to the list
-		for (MMWorld world : mmWorlds)
-		{
-			worlds.add(world);
-		}
+		lastRun = now;
 	}
 	
 	/**
-	 * Sets up iterators for entities in each world one by one
-	 * @return False when there are no more worlds to setup
+	 * Calculates how long the scanner can run this tick</br>
+	 * The configured budget is used while the server keeps up with 20 TPS
+	 * and is reduced as the tick time grows
 	 */
-	public boolean setupNextWorld()
-	{	
-		// Fetch the current world we are setting up
-		MMWorld world = worlds.get(currentIndex);
-		
-		// Fetch a list of entities in the world
-		List<LivingEntity> entities = world.getWorld().getLivingEntities();
+	private long calculateBudget()
+	{
+		double factor = averageTickNanos <= TICK_NANOS ? 1.0 : TICK_NANOS / averageTickNanos;
 		
-		// Add the iterator for the entity list to our list
-		iterators.add(entities.iterator());
+		// Back off quickly when the server is lagging
+		factor *= factor;
 		
-		// Update the mob counts of the world so we know they are up to date
-		world.updateMobCounts(entities);
+		if (factor < MIN_BUDGET_FACTOR)
+			factor = MIN_BUDGET_FACTOR;
 		
-		// Increment the index and return false if we are finished
-		if (++currentIndex >= worlds.size())
-		{
-			// Reset the current index for the iterator
-			currentIndex = 0;
-			return false;
-		}
+		return (long) (LimiterConfig.despawnScanBudgetNanos * factor);
+	}
+	
+	private void startPass()
+	{
+		worlds = MMComponent.getLimiter().getWorlds();
+		worldIndex = -1;
+		entities = null;
+		cursorFinished = false;
+		ticksSincePassStart = 0;
 		
-		return true;
+		passStart = System.currentTimeMillis();
+		passTicks = 0;
+		passChecked = 0;
+		passDespawned = 0;
 	}
 	
 	/**
-	 * Fetches the world we are currently iterating over
+	 * Finishes the pass once every mob has been checked and every
+	 * batch handed to the workers has been applied
 	 */
-	public MMWorld getWorld()
+	private void checkPassFinished()
 	{
-		return worlds.get(currentIndex);
+		if (worlds == null || !cursorFinished || pendingBatches.get() != 0 || !completedBatches.isEmpty())
+			return;
+		
+		lastPassMillis = System.currentTimeMillis() - passStart;
+		lastPassTicks = passTicks;
+		lastPassChecked = passChecked;
+		lastPassDespawned = passDespawned;
+		++passes;
+		
+		worlds = null;
+		entities = null;
 	}
 	
 	/**
-	 * Checks if there are more entities to check</br>
-	 * Also iterates to the next iterator when the current one is finished
+	 * Moves the cursor to the next world
+	 * @return False if there are no worlds left to scan
 	 */
-	public boolean hasNext()
+	private boolean nextWorld()
 	{
-		// If the index is too high we have no more iterators left
-		if (currentIndex >= iterators.size())
-			return false;
-		
-		// If the iterator at the current index is null we skip it
-		if (iterators.get(currentIndex) == null)
+		if (++worldIndex >= worlds.length)
 		{
-			++currentIndex;
-			return hasNext();
+			cursorFinished = true;
+			return false;
 		}
 		
-		// If the current iterator has another entity we return true
-		if (iterators.get(currentIndex).hasNext())
-			return true;
+		MMWorld world = worlds[worldIndex];
 		
-		// If there are no more iterators we are done
-		if (++currentIndex >= iterators.size())
-			return false;
+		// Fetch a list of entities in the world
+		entities = world.getWorld().getLivingEntities();
+		entityIndex = 0;
+		
+		// Update the mob counts of the world so we know they are up to date
+		if (!world.updateMobCounts(entities))
+			world.removeInvalidMobs();
 		
-		return hasNext();
+		return true;
 	}
 	
 	/**
-	 * Fetches the next entity
+	 * Checks mobs until the budget is used up or every world has been scanned
+	 * @param start The time the tick started in nanoseconds
+	 * @param budget Time in nanoseconds the scan can run for
+	 * @param async True if snapshots should be handed to workers instead of checking mobs here
 	 */
-	public LivingEntity next()
+	private void scan(long start, long budget, boolean async)
 	{
-		if (!hasNext())
-			return null;
+		int checked = 0;
 		
-		return iterators.get(currentIndex).next();
-	}
-	
-	public void empty()
-	{
-		currentIndex = iterators.size();
-	}
-}
-
-class DespawnSetup extends BukkitRunnable
-{
-	private final AtomicBoolean running;
-	private final EntityIterator it;
-	
-	DespawnSetup(AtomicBoolean running)
-	{
-		this.running = running;
-		this.it = new EntityIterator();
+		while (System.nanoTime() - start < budget)
+		{
+			if (entities == null && (cursorFinished || !nextWorld()))
+				break;
+			
+			MMWorld world = worlds[worldIndex];
+			ArrayList<DespawnSnapshot> snapshots = async ? new ArrayList<DespawnSnapshot>() : null;
+			
+			while (entityIndex < entities.size())
+			{
+				LivingEntity entity = entities.get(entityIndex++);
+				++checked;
+				
+				// Keep the chunk counts following mobs which have wandered between chunks
+				if (entity.isValid())
+					world.refreshMob(entity);
+				
+				if (async)
+				{
+					DespawnSnapshot snapshot = DespawnSnapshot.capture(entity);
+					if (snapshot != null)
+						snapshots.add(snapshot);
+				}
+				else if (MobDespawnCheck.shouldDespawn(world, entity, true))
+				{
+					despawn(world, entity);
+				}
+				
+				if (System.nanoTime() - start >= budget)
+					break;
+			}
+			
+			// Hand the snapshots to a worker
+			if (async && !snapshots.isEmpty())
+			{
+				pendingBatches.incrementAndGet();
+				new DespawnBatch(world, snapshots).runTaskAsynchronously(P.p());
+			}
+			
+			// Move on to the next world when this one is finished
+			if (entityIndex >= entities.size())
+				entities = null;
+		}
+		
+		passChecked += checked;
+		totalChecked += checked;
 	}
 	
-	public void run()
+	/**
+	 * Removes mobs from batches which the workers have finished with
+	 * @param start The time the tick started in nanoseconds
+	 * @param budget Time in nanoseconds the removals can run for
+	 */
+	private void applyRemovals(long start, long budget)
 	{
-		if (!it.setupNextWorld())
+		DespawnBatch batch;
+		
+		while ((batch = completedBatches.peek()) != null)
 		{
-			// Stop the setup task
-			cancel();
+			while (batch.nextRemoval < batch.despawns.size())
+			{
+				DespawnSnapshot snapshot = batch.despawns.get(batch.nextRemoval++);
+				
+				// The mob may have died, been tamed, named or picked up items since the snapshot was taken
+				if (snapshot.canStillDespawn())
+					despawn(batch.world, snapshot.entity);
+				
+				if (System.nanoTime() - start >= budget)
+					return;
+			}
 			
-			DespawnTask task = new DespawnTask(running, it);
-			// Run the despawner task
-			if (LimiterConfig.useAsyncDespawnScanner)
-				task.runTaskTimerAsynchronously(P.p(), 1L, 1L);
-			else
-				task.runTaskTimer(P.p(), 1L, 1L);
-		}	
+			completedBatches.poll();
+			
+			// The snapshots locations came from the main threads LocationCache
+			for (DespawnSnapshot snapshot : batch.snapshots)
+				LocationCache.release(snapshot.location);
+		}
 	}
-}
-
-class DespawnTask extends BukkitRunnable
-{
-	private boolean warning = false;
-	private final AtomicBoolean running;
-	private final EntityIterator it;
 	
-	DespawnTask(AtomicBoolean running, EntityIterator it)
+	private void despawn(MMWorld world, LivingEntity entity)
 	{
-		this.running = running;
-		this.it = it;
+		entity.remove();
+		world.decrementMobCount(ExtendedEntityType.valueOf(entity), entity);
+		++passDespawned;
 	}
 	
-	
 	/**
-	 * Scans for and removes entities which are not required
+	 * Decides which mobs in a batch of snapshots should be despawned</br>
+	 * Run asynchronously, the results are removed by the main thread
 	 */
-	@Override
-	public void run()
+	private class DespawnBatch extends BukkitRunnable
 	{
-		// Note the time we start
-		long start = System.nanoTime();
-		LivingEntity entity;
+		private final MMWorld world;
+		private final ArrayList<DespawnSnapshot> snapshots;
+		private final ArrayList<DespawnSnapshot> despawns = new ArrayList<DespawnSnapshot>();
+		
+		/**
+		 * Only used by the main thread
+		 */
+		private int nextRemoval = 0;
+		
+		DespawnBatch(MMWorld world, ArrayList<DespawnSnapshot> snapshots)
+		{
+			this.world = world;
+			this.snapshots = snapshots;
+		}
 		
-		// Iterate through each entity until there are none left or the task has run for 0.5ms
-		while ((entity = it.next()) != null && (System.nanoTime() - start) < 500000L)
+		@Override
+		public void run()
 		{
-			// Check if the mob should be despawned
-			if (MobDespawnCheck.shouldDespawn(it.getWorld(), entity, true))
+			try
 			{
-				// try/catch just in case Bukkit decide to add an event for removing entities
-				try
+				for (DespawnSnapshot snapshot : snapshots)
 				{
-					entity.remove();
-				}
-				catch (Exception e)
-				{
-					// Make sure this isn't spamed
-					if (!warning)
-					{
-						warning = true;
-						MMComponent.getLimiter().warning("Please disable \"UseAsyncDespawnScanner\" it needs to be fixed. Please notify ShadowDog007");
-						MMComponent.getLimiter().warning("Automatically switching to Synchronous Despawn Scanner");
-						LimiterConfig.useAsyncDespawnScanner = false;
-						
-						// Empty the iterator
-						it.empty();
-						break;
-					}
+					if (MobDespawnCheck.shouldDespawn(world, snapshot, true))
+						despawns.add(snapshot);
 				}
 				
-				it.getWorld().decrementMobCount(ExtendedEntityType.valueOf(entity), entity);
+				// Batches are always handed back so the main thread can release their locations
+				completedBatches.add(this);
+			}
+			finally
+			{
+				pendingBatches.decrementAndGet();
 			}
 		}
-		
-		boolean finished = !it.hasNext() || P.p() == null;
-		
-		// The task is finished, and allow a new one to start
-		if (finished)
-		{			
-			/* ######## END TASK ######## */
-			cancel();
-			running.compareAndSet(true, false);
-		}
+	}
+	
+	/**
+	 * @return The time in nanoseconds the scanner was allowed to use on the last tick
+	 */
+	public long getCurrentBudgetNanos()
+	{
+		return currentBudgetNanos;
+	}
+	
+	/**
+	 * @return The average time between ticks in nanoseconds
+	 */
+	public long getAverageTickNanos()
+	{
+		return (long) averageTickNanos;
+	}
+	
+	/**
+	 * @return The average number of mobs checked per millisecond of main thread time
+	 */
+	public double getThroughput()
+	{
+		long scanNanos = totalScanNanos;
+		return scanNanos > 0 ? totalChecked * 1000000.0 / scanNanos : 0.0;
+	}
+	
+	public int getPasses()
+	{
+		return passes;
+	}
+	
+	/**
+	 * @return The time in milliseconds the last full pass took from start to finish
+	 */
+	public long getLastPassMillis()
+	{
+		return lastPassMillis;
+	}
+	
+	public int getLastPassTicks()
+	{
+		return lastPassTicks;
+	}
+	
+	public int getLastPassChecked()
+	{
+		return lastPassChecked;
+	}
+	
+	public int getLastPassDespawned()
+	{
+		return lastPassDespawned;
 	}
 }
-
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+
+package com.forgenz.mobmanager.limiter.util;
+
+import java.util.UUID;
+
+import org.bukkit.Location;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Tameable;
+import org.bukkit.inventory.EntityEquipment;
+
+import com.forgenz.mobmanager.MMComponent;
+import com.forgenz.mobmanager.P;
+import com.forgenz.mobmanager.common.util.ExtendedEntityType;
+import com.forgenz.mobmanager.common.util.LocationCache;
+import com.forgenz.mobmanager.common.util.PlayerFinder;
+import com.forgenz.mobmanager.limiter.config.LimiterConfig;
+
+/**
+ * An immutable copy of everything needed to decide whether a mob should be despawned</br>
+ * Snapshots are captured on the main thread so the decision can be made
+ * from another thread without touching Bukkit objects
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public final class DespawnSnapshot
+{
+	/**
+	 * The entity the snapshot was taken of</br>
+	 * <b>Must only be used from the main thread</b>
+	 */
+	public final LivingEntity entity;
+	
+	public final ExtendedEntityType type;
+	public final MobType mobType;
+	/**
+	 * Taken from the LocationCache, released on the main thread once the snapshot is finished with
+	 */
+	public final Location location;
+	public final int ticksLived;
+	public final boolean flying;
+	
+	/**
+	 * Only set for animals
+	 */
+	public final UUID uniqueId;
+	public final boolean tamed;
+	
+	/**
+	 * The highest drop chance of the equipment the mob is carrying</br>
+	 * Only set for mobs which can pick up items
+	 */
+	public final float maxEquipmentDropChance;
+	
+	private DespawnSnapshot(LivingEntity entity, ExtendedEntityType type, MobType mobType)
+	{
+		this.entity = entity;
+		this.type = type;
+		this.mobType = mobType;
+		this.location = LocationCache.getCachedLocation(entity);
+		this.ticksLived = entity.getTicksLived();
+		this.flying = PlayerFinder.mobFlys(entity);
+		
+		if (mobType == MobType.ANIMAL)
+		{
+			uniqueId = entity.getUniqueId();
+			tamed = entity instanceof Tameable && ((Tameable) entity).isTamed();
+		}
+		else
+		{
+			uniqueId = null;
+			tamed = false;
+		}
+		
+		maxEquipmentDropChance = hasEquipment(entity.getType()) ? getMaxDropChance(entity.getEquipment()) : 0.0F;
+	}
+	
+	/**
+	 * Captures a snapshot of the entity</br>
+	 * Must be called from the main thread
+	 * @param entity The entity to capture
+	 * @return The snapshot, or null if the entity can never be despawned
+	 */
+	public static DespawnSnapshot capture(LivingEntity entity)
+	{
+		// Despawn a player? I don't think so..
+		if (entity.getType() == EntityType.PLAYER)
+			return null;
+		
+		// Make sure the entity is alive and valid
+		if (!entity.isValid())
+			return null;
+		
+		// Check if the mob has lived long enough
+		if (entity.getTicksLived() <= LimiterConfig.minTicksLivedForDespawn)
+			return null;
+		
+		// Check if other plugins will allow the mob to be despawned
+		if (!P.p().getPluginIntegration().canDespawn(entity))
+			return null;
+		
+		// Fetch the entities type
+		ExtendedEntityType type = ExtendedEntityType.valueOf(entity);
+		
+		MobType mobType = type.getMobType(entity);
+		// If MobManager does not recognize the entity ignore it
+		if (mobType == null)
+			return null;
+		
+		return new DespawnSnapshot(entity, type, mobType);
+	}
+	
+	/**
+	 * Checks that nothing which protects the mob has changed since the snapshot was taken</br>
+	 * Only the cheap checks are repeated. Must be called from the main thread
+	 * @return True if the mob can still be despawned
+	 */
+	public boolean canStillDespawn()
+	{
+		// The mob may have died or been removed
+		if (!entity.isValid())
+			return false;
+		
+		// Another plugin may have started protecting the mob
+		if (!P.p().getPluginIntegration().canDespawn(entity))
+			return false;
+		
+		// The animal may have been protected since the snapshot was taken
+		if (mobType == MobType.ANIMAL)
+		{
+			AnimalProtection protection = MMComponent.getLimiter().animalProtection;
+			if (protection != null && protection.checkUUID(uniqueId))
+				return false;
+		}
+		
+		// The animal has been tamed
+		if (mobType == MobType.ANIMAL && !tamed && !LimiterConfig.removeTamedAnimals && entity instanceof Tameable && ((Tameable) entity).isTamed())
+			return false;
+		
+		// The mob has picked up a players items
+		if (maxEquipmentDropChance < 1F && hasEquipment(entity.getType()) && getMaxDropChance(entity.getEquipment()) >= 1F)
+			return false;
+		
+		return true;
+	}
+	
+	private static float getMaxDropChance(EntityEquipment equipment)
+	{
+		if (equipment == null)
+			return 0.0F;
+		
+		return Math.max(equipment.getItemInHandDropChance(),
+				Math.max(equipment.getBootsDropChance(),
+				Math.max(equipment.getChestplateDropChance(),
+				Math.max(equipment.getHelmetDropChance(), equipment.getLeggingsDropChance()))));
+	}
+	
+	private static boolean hasEquipment(EntityType type)
+	{
+		switch (type)
+		{
+		case ZOMBIE:
+		case PIG_ZOMBIE:
+		case SKELETON:
+			return true;
+		default:
+			return false;
+		}
+	}
+}
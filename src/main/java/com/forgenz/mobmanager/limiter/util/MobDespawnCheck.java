@@ -28,15 +28,10 @@
 
 package com.forgenz.mobmanager.limiter.util;
 
-import org.bukkit.entity.Entity;
-import org.bukkit.entity.EntityType;
 import org.bukkit.entity.LivingEntity;
-import org.bukkit.entity.Tameable;
-import org.bukkit.inventory.EntityEquipment;
 
 import com.forgenz.mobmanager.MMComponent;
-import com.forgenz.mobmanager.P;
-import com.forgenz.mobmanager.common.util.ExtendedEntityType;
+import com.forgenz.mobmanager.common.util.LocationCache;
 import com.forgenz.mobmanager.common.util.PlayerFinder;
 import com.forgenz.mobmanager.limiter.config.LimiterConfig;
 import com.forgenz.mobmanager.limiter.world.MMWorld;
@@ -78,90 +73,78 @@ public class MobDespawnCheck
 			return false;
 		}
 		
-		// Despawn a player? I don't think so..
-		if (entity.getType() == EntityType.PLAYER)
+		DespawnSnapshot snapshot = DespawnSnapshot.capture(entity);
+		if (snapshot == null)
 			return false;
 		
-		// Make sure the entity is alive and valid
-		if (!entity.isValid())
-			return false;
-
-		// Check if the mob has lived long enough
-		if (entity.getTicksLived() <= LimiterConfig.minTicksLivedForDespawn)
-			return false;
+		boolean despawn = shouldDespawn(world, snapshot, findPlayer);
 		
-		// Check if other plugins will allow the mob to be despawned
-		if (!P.p().getPluginIntegration().canDespawn(entity))
-			return false;
-
-		// Fetch the entities type
-		ExtendedEntityType eType = ExtendedEntityType.valueOf(entity);
-
-		MobType mob = eType.getMobType(entity);
-		// If MobManager does not recognize the entity ignore it
-		if (mob == null)
+		// The snapshot is not used again so its location can be reused
+		LocationCache.release(snapshot.location);
+		return despawn;
+	}
+	
+	/**
+	 * Checks the snapshot of a mob to see if it should be despawned</br>
+	 * Only touches live Bukkit objects if the player index has not been built yet,
+	 * otherwise it can be called from any thread
+	 * @param world The world the entity resides in
+	 * @param snapshot The snapshot of the entity taken on the main thread
+	 * @param findPlayer Whether or not to try find a player (False if you know there are no nearby players)
+	 * @return True if the entity should be despawned
+	 */
+	public static boolean shouldDespawn(MMWorld world, DespawnSnapshot snapshot, boolean findPlayer)
+	{
+		// Check if the mob has lived long enough
+		if (snapshot.ticksLived <= LimiterConfig.minTicksLivedForDespawn)
 			return false;
 		
 		// Check if the mob is being ignored
-		if (LimiterConfig.ignoredMobs.contains(eType))
+		if (LimiterConfig.ignoredMobs.contains(snapshot.type))
 			return false;
 		
 		// Check if the mob is an animal
-		if (mob == MobType.ANIMAL)
+		if (snapshot.mobType == MobType.ANIMAL)
 		{
 			// If animal protection is off then despawning of animals is disabled
 			if (!LimiterConfig.enableAnimalDespawning || MMComponent.getLimiter().animalProtection == null)
 				return false;
 			
 			// Check if the animal is tamed
-			if (!LimiterConfig.removeTamedAnimals && entity instanceof Tameable)
-			{
-				Tameable tameable = (Tameable) entity;
-				
-				if (tameable.isTamed())
-					return false;
-			}
+			if (!LimiterConfig.removeTamedAnimals && snapshot.tamed)
+				return false;
 			
 			// Check if the animal is being protected
-			if (MMComponent.getLimiter().animalProtection.checkUUID(entity.getUniqueId()))
+			if (MMComponent.getLimiter().animalProtection.checkUUID(snapshot.uniqueId))
 				return false;
 
 			// If the chunk has more than 'numAnimalsForFarm' then animals are not despawned
-			int animalCount = 0;
-			for (Entity e : entity.getLocation().getChunk().getEntities())
-			{
-				if (MobType.ANIMAL.belongs(e))
-					++animalCount;
-			}
-			if (animalCount >= world.worldConf.numAnimalsForFarm)
+			if (world.getChunkMobCount(MobType.ANIMAL, snapshot.location) >= world.worldConf.numAnimalsForFarm)
 				return false;
 		}
 		// Only despawn villagers if they are over their limits
-		else if (mob == MobType.VILLAGER)
+		else if (snapshot.mobType == MobType.VILLAGER)
 		{
-			if (world.withinMobLimit(eType, entity))
+			if (world.withinMobLimit(snapshot.type, null))
 				return false;
 		}
 		// Does not despawn the entity if it carries players items
-		else if (hasEquipment(entity.getType()))
+		else if (snapshot.maxEquipmentDropChance >= 1F)
 		{
-			EntityEquipment equipment = entity.getEquipment();
-			
-			// If any of these statements pass then the the mob carries an item dropped from a player
-			if (equipment.getItemInHandDropChance() >= 1F
-					|| equipment.getBootsDropChance() >= 1F
-					|| equipment.getChestplateDropChance() >= 1F
-					|| equipment.getHelmetDropChance() >= 1F
-					|| equipment.getLeggingsDropChance() >= 1F)
-				return false;
+			return false;
 		}
 		
 		// If we are not looking for a player the mob can be despawned
 		if (!findPlayer)
 			return true;
 		
+		// Fetch the worlds search distance at the given entities height
+		int searchDist = world.getSearchDistanceSquared((short) snapshot.location.getBlockY());
+		// Fetch the worlds search height
+		int searchY = world.getSearchHeight() + (snapshot.flying ? LimiterConfig.flyingMobAditionalBlockDepth : 0);
+		
 		// Search for a nearby player
-		return !PlayerFinder.playerNear(world, entity, PlayerFinder.mobFlys(entity));
+		return !PlayerFinder.playerNear(snapshot.location, searchDist, searchY);
 	}
 	
 	public static boolean shouldDespawn(LivingEntity entity)
@@ -173,17 +156,4 @@ public class MobDespawnCheck
 	{
 		return shouldDespawn(world, entity, true);
 	}
-	
-	private static boolean hasEquipment(EntityType type)
-	{
-		switch (type)
-		{
-		case ZOMBIE:
-		case PIG_ZOMBIE:
-		case SKELETON:
-			return true;
-		default:
-			return false;
-		}
-	}
 }
@@ -31,13 +31,17 @@ package com.forgenz.mobmanager.limiter.world;
 import java.util.List;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
 import org.bukkit.World;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Tameable;
 
 import com.forgenz.mobmanager.MMComponent;
-import com.forgenz.mobmanager.P;
 import com.forgenz.mobmanager.common.util.ExtendedEntityType;
+import com.forgenz.mobmanager.common.util.LocationCache;
+import com.forgenz.mobmanager.common.util.LongObjectMap;
 import com.forgenz.mobmanager.limiter.config.LimiterConfig;
 import com.forgenz.mobmanager.limiter.config.WorldConfig;
 import com.forgenz.mobmanager.limiter.util.MobType;
@@ -50,7 +54,6 @@ import com.forgenz.mobmanager.limiter.util.MobType;
  */
 public class MMWorld
 {	
-	private static long ticksPerRecount = LimiterConfig.ticksPerRecount;
 	/**
 	 * Bukkit world this object as affiliated with
 	 */
@@ -67,9 +70,23 @@ public class MMWorld
 	private int numChunks = 0;
 
 	/**
-	 * Used to check if we should update mob counts
+	 * Time (System.currentTimeMillis()) after which mob counts may be recounted
 	 */
-	private boolean needsUpdate = true;
+	private long nextRecount = 0L;
+	
+	/**
+	 * True once the mobs in the world have been counted at least once
+	 */
+	private boolean counted = false;
+	
+	/**
+	 * Drift statistics</br>
+	 * Drift is the difference between the tracked counts and the counts found by a recount,
+	 * kept separately for the MobType totals and the individual mob type counts
+	 */
+	private int recounts = 0;
+	private int lastDrift = 0, lastIndividualDrift = 0;
+	private long totalDrift = 0L, totalIndividualDrift = 0L;
 	
 	
 	/**
@@ -82,6 +99,21 @@ public class MMWorld
 	 */
 	private int[] individualMobCounts;
 	
+	/**
+	 * Every mob included in the counts keyed by entity id</br>
+	 * Only used from the main thread
+	 */
+	private LongObjectMap<CountedMob> countedMobs = new LongObjectMap<CountedMob>(256);
+	
+	/**
+	 * Stores the number of mobs of each MobType within each loaded chunk</br>
+	 * Unlike the world counts these include ignored mobs and tamed animals</br>
+	 * Mobs are moved to the chunk they are in each time the despawn scanner visits them</br>
+	 * Replaced as a whole by recounts. Locked by chunkLock as the async despawn scanner reads these counts
+	 */
+	private LongObjectMap<int[]> chunkMobCounts = new LongObjectMap<int[]>(256);
+	private final Object chunkLock = new Object();
+	
 	public MMWorld(final World world, WorldConfig worldConf)
 	{
 		this.world = world;
@@ -141,20 +173,6 @@ public class MMWorld
 		return worldConf.despawnSearchHeight > 0 ? worldConf.despawnSearchHeight : LimiterConfig.despawnSearchHeight;
 	}
 	
-	private void resetMobCounts()
-	{
-		for (MobType mob : MobType.values())
-		{
-			mobCounts[mob.ordinal()] = 0;
-		}
-		
-		for (int i = 0; i < individualMobCounts.length; ++i)
-		{
-			if (individualMobCounts[i] != -1)
-				individualMobCounts[i] = 0;
-		}
-	}
-	
 	public boolean updateMobCounts()
 	{
 		return updateMobCounts(null);
@@ -166,73 +184,328 @@ public class MMWorld
 	 */
 	public boolean updateMobCounts(List<LivingEntity> entities)
 	{
-		if (Bukkit.isPrimaryThread() && needsUpdate)
+		if (!Bukkit.isPrimaryThread())
+			return false;
+		
+		long now = System.currentTimeMillis();
+		if (now < nextRecount)
+			return false;
+		
+		// When counting incrementally the recount only acts as a reconciliation pass
+		int ticksTillNextRecount = LimiterConfig.incrementalMobCounting ? LimiterConfig.ticksPerReconcile : LimiterConfig.ticksPerRecount;
+		nextRecount = now + ticksTillNextRecount * 50L;
+		
+		numChunks = world.getLoadedChunks().length;
+		
+		// Fetches the list of entities if it was not given
+		if (entities == null)
+			entities = world.getLivingEntities();
+		
+		// Build the new counts before swapping them in so they are never seen half counted
+		int[] newMobCounts = new int[mobCounts.length];
+		int[] newIndividualMobCounts = individualMobCounts.clone();
+		for (int i = 0; i < newIndividualMobCounts.length; ++i)
 		{
-			resetMobCounts();
+			if (newIndividualMobCounts[i] != -1)
+				newIndividualMobCounts[i] = 0;
+		}
+		LongObjectMap<CountedMob> newCountedMobs = new LongObjectMap<CountedMob>(entities.size());
+		LongObjectMap<int[]> newChunkMobCounts = new LongObjectMap<int[]>(256);
+		
+		// Count each mob in the world
+		for (final LivingEntity entity : entities)
+		{
+			CountedMob mob = createCountedMob(ExtendedEntityType.valueOf(entity), entity, null);
 			
-			numChunks = world.getLoadedChunks().length;
+			if (mob == null || newCountedMobs.put(entity.getEntityId(), mob) != null)
+				continue;
 			
-			// Fetches the list of entities if it was not given
-			if (entities == null)
-				entities = world.getLivingEntities();
+			if (mob.mob != null)
+				adjustChunkMobCount(newChunkMobCounts, mob.mob, mob.chunk, 1);
+			adjustWorldCounts(mob, 1, newMobCounts, newIndividualMobCounts);
+		}
+		
+		if (counted)
+		{
+			int drift = 0;
+			for (int i = 0; i < mobCounts.length; ++i)
+			{
+				drift += Math.abs(newMobCounts[i] - mobCounts[i]);
+			}
 			
-			// Loop through each loaded chunk in the world
-			for (final LivingEntity entity : entities)
+			int individualDrift = 0;
+			for (int i = 0; i < individualMobCounts.length; ++i)
 			{
-				ExtendedEntityType eType = ExtendedEntityType.valueOf(entity);
-				
-				// Check if the mob should be ignored
-				if (LimiterConfig.ignoredMobs.contains(eType))
-					continue;
-				
-				// Add individual mob counts
-				if (individualMobCounts != null)
-				{
-					// Check to see if the mob should be counted
-					if (individualMobCounts[eType.ordinal()] != -1)
-					{
-						++individualMobCounts[eType.ordinal()];
-					}
-				}
-
-				// Fetch mob type
-				MobType mob = eType.getMobType(entity);
-				// If the mob type is null ignore the entity
-				if (mob == null)
-					continue;
-
-
-				if (mob == MobType.ANIMAL)
-				{
-					// Make sure tameable animals are not counted if it is set to false
-					if (!LimiterConfig.countTamedAnimals && entity instanceof Tameable)
-					{
-						Tameable tameable = (Tameable) entity;
-
-						if (tameable.isTamed())
-							continue;
-					}
-				}
-
-				// Increment counter
-				++mobCounts[mob.ordinal()];
+				if (individualMobCounts[i] != -1)
+					individualDrift += Math.abs(newIndividualMobCounts[i] - individualMobCounts[i]);
 			}
 			
-			// Reset 'updatedThisTick' so updates can be run again later
-			P.p().getServer().getScheduler().runTaskLater(P.p(),
-				new Runnable()
-				{
-					public void run()
-					{
-						needsUpdate = true;
-					}
-				}
-				, ticksPerRecount);
+			++recounts;
+			lastDrift = drift;
+			totalDrift += drift;
+			lastIndividualDrift = individualDrift;
+			totalIndividualDrift += individualDrift;
+		}
+		
+		countedMobs = newCountedMobs;
+		mobCounts = newMobCounts;
+		individualMobCounts = newIndividualMobCounts;
+		synchronized (chunkLock)
+		{
+			chunkMobCounts = newChunkMobCounts;
+		}
+		
+		counted = true;
+		return true;
+	}
+	
+	/**
+	 * Works out which counts the mob belongs in</br>
+	 * All counting goes through here so recounts and event driven counting
+	 * always agree on which mobs are counted
+	 * @param eType The mob type which is being counted
+	 * @param entity The actual mob being counted
+	 * @param loc The location of the mob (Fetched if null)
+	 * @return The mob or null if it can not be counted
+	 */
+	private CountedMob createCountedMob(ExtendedEntityType eType, LivingEntity entity, Location loc)
+	{
+		if (eType == null)
+			return null;
+		
+		// Fetch mob type
+		MobType mob = eType.getMobType(entity);
+		
+		// Chunk counts include every mob
+		long chunk = 0L;
+		if (mob != null)
+		{
+			if (loc == null)
+			{
+				loc = LocationCache.getCachedLocation(entity);
+				chunk = LongObjectMap.key(loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+				LocationCache.release(loc);
+			}
+			else
+			{
+				chunk = LongObjectMap.key(loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+			}
+		}
+		
+		boolean worldCounted = true;
+		
+		// Check if the mob should be ignored
+		if (LimiterConfig.ignoredMobs.contains(eType) || eType.hasParent() && LimiterConfig.ignoredMobs.contains(eType.getParent()))
+			worldCounted = false;
+		// Make sure tameable animals are not counted if it is set to false
+		else if (mob == MobType.ANIMAL && !LimiterConfig.countTamedAnimals && entity instanceof Tameable && ((Tameable) entity).isTamed())
+			worldCounted = false;
+		
+		return new CountedMob(entity, eType, mob, worldCounted, chunk);
+	}
+	
+	/**
+	 * Adds or removes a mob from the world counts
+	 */
+	private static void adjustWorldCounts(CountedMob counted, int amount, int[] mobCounts, int[] individualMobCounts)
+	{
+		if (!counted.worldCounted)
+			return;
+		
+		ExtendedEntityType eType = counted.type;
+		
+		// Add individual mob counts (The parents count includes its children)
+		if (eType.hasParent() && individualMobCounts[eType.getParent().ordinal()] != -1)
+			individualMobCounts[eType.getParent().ordinal()] += amount;
+		if (individualMobCounts[eType.ordinal()] != -1)
+			individualMobCounts[eType.ordinal()] += amount;
+		
+		// If the mob type is null the entity has no MobType count
+		if (counted.mob != null)
+			mobCounts[counted.mob.ordinal()] += amount;
+	}
+	
+	/**
+	 * Adds or removes a mob from a chunks counts</br>
+	 * Chunks are removed once they have no mobs in them
+	 */
+	private static void adjustChunkMobCount(LongObjectMap<int[]> chunkMobCounts, MobType mob, long key, int amount)
+	{
+		int[] counts = chunkMobCounts.get(key);
+		
+		if (counts == null)
+		{
+			counts = new int[MobType.values().length];
+			chunkMobCounts.put(key, counts);
+		}
+		
+		counts[mob.ordinal()] += amount;
+		
+		for (int count : counts)
+		{
+			if (count != 0)
+				return;
+		}
+		
+		chunkMobCounts.remove(key);
+	}
+	
+	/**
+	 * Adds the mob to the counts unless it is already counted
+	 * @return The mob as it is counted
+	 */
+	private CountedMob addMob(ExtendedEntityType eType, LivingEntity entity, Location loc)
+	{
+		CountedMob counted = countedMobs.get(entity.getEntityId());
+		if (counted != null)
+			return counted;
+		
+		counted = createCountedMob(eType, entity, loc);
+		if (counted == null)
+			return null;
+		
+		countedMobs.put(entity.getEntityId(), counted);
+		
+		if (counted.mob != null)
+		{
+			synchronized (chunkLock)
+			{
+				adjustChunkMobCount(chunkMobCounts, counted.mob, counted.chunk, 1);
+			}
+		}
+		adjustWorldCounts(counted, 1, mobCounts, individualMobCounts);
+		
+		return counted;
+	}
+	
+	/**
+	 * Removes the mob from exactly the counts it was added to
+	 */
+	private void removeMob(LivingEntity entity)
+	{
+		CountedMob counted = countedMobs.remove(entity.getEntityId());
+		if (counted == null)
+			return;
+		
+		if (counted.mob != null)
+		{
+			synchronized (chunkLock)
+			{
+				adjustChunkMobCount(chunkMobCounts, counted.mob, counted.chunk, -1);
+			}
+		}
+		adjustWorldCounts(counted, -1, mobCounts, individualMobCounts);
+	}
+	
+	/**
+	 * Removes mobs which are no longer alive from the counts</br>
+	 * Catches mobs removed without an event (e.g. Vanilla despawns)
+	 * which would otherwise stay counted until the next recount
+	 * @return The number of mobs removed from the counts
+	 */
+	public int removeInvalidMobs()
+	{
+		if (!Bukkit.isPrimaryThread())
+			return 0;
+		
+		int removed = 0;
+		for (long id : countedMobs.keys())
+		{
+			CountedMob counted = countedMobs.get(id);
 			
-			needsUpdate = false;
-			return true;
+			if (!counted.entity.isValid())
+			{
+				removeMob(counted.entity);
+				++removed;
+			}
+		}
+		
+		return removed;
+	}
+	
+	/**
+	 * Moves the mob to the chunk it is now in, counting it if it was missed</br>
+	 * Called by the despawn scanner for every mob it visits
+	 * @param entity The mob
+	 * @param loc The mobs current location
+	 */
+	public void refreshMob(LivingEntity entity, Location loc)
+	{
+		CountedMob counted = addMob(ExtendedEntityType.valueOf(entity), entity, loc);
+		
+		if (counted == null || counted.mob == null)
+			return;
+		
+		long chunk = LongObjectMap.key(loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+		if (chunk == counted.chunk)
+			return;
+		
+		synchronized (chunkLock)
+		{
+			adjustChunkMobCount(chunkMobCounts, counted.mob, counted.chunk, -1);
+			adjustChunkMobCount(chunkMobCounts, counted.mob, chunk, 1);
+		}
+		counted.chunk = chunk;
+	}
+	
+	public void refreshMob(LivingEntity entity)
+	{
+		Location loc = LocationCache.getCachedLocation(entity);
+		refreshMob(entity, loc);
+		LocationCache.release(loc);
+	}
+	
+	/**
+	 * Fetches the number of mobs of the given type within a chunk</br>
+	 * Includes ignored mobs and tamed animals
+	 * @param mob The type of mob to fetch the count for
+	 * @param chunkX The X coordinate of the chunk
+	 * @param chunkZ The Z coordinate of the chunk
+	 * @return The number of mobs of the given type in the chunk
+	 */
+	public int getChunkMobCount(MobType mob, int chunkX, int chunkZ)
+	{
+		synchronized (chunkLock)
+		{
+			int[] counts = chunkMobCounts.get(chunkX, chunkZ);
+			return counts != null ? counts[mob.ordinal()] : 0;
+		}
+	}
+	
+	/**
+	 * Fetches the number of mobs of the given type within the chunk at the location
+	 */
+	public int getChunkMobCount(MobType mob, Location loc)
+	{
+		return getChunkMobCount(mob, loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+	}
+	
+	/**
+	 * Counts the mobs within a chunk which has just been loaded
+	 */
+	public void addChunkMobs(Chunk chunk)
+	{
+		for (Entity entity : chunk.getEntities())
+		{
+			if (entity instanceof LivingEntity)
+			{
+				refreshMob((LivingEntity) entity);
+			}
+		}
+	}
+	
+	/**
+	 * Removes the mobs within a chunk which is being unloaded from the counts
+	 */
+	public void removeChunkMobs(Chunk chunk)
+	{
+		for (Entity entity : chunk.getEntities())
+		{
+			if (entity instanceof LivingEntity)
+			{
+				removeMob((LivingEntity) entity);
+			}
 		}
-		return false;
 	}
 
 	public World getWorld()
@@ -312,21 +585,7 @@ public class MMWorld
 	 */
 	public void incrementMobCount(ExtendedEntityType mob, LivingEntity entity)
 	{
-		if (mob == null)
-			return;
-		
-		if (mob.hasParent())
-			incrementMobCount(mob.getParent(), entity);
-		
-		// Increment the MobTypes count
-		incrementMobCount(mob.getMobType(entity));
-		
-		if (individualMobCounts == null)
-			return;
-		
-		// Increment the mobs count if we should be counting it
-		if (individualMobCounts[mob.ordinal()] != -1)
-			++individualMobCounts[mob.ordinal()];
+		addMob(mob, entity, null);
 	}
 	
 	/**
@@ -336,36 +595,7 @@ public class MMWorld
 	 */
 	public void decrementMobCount(ExtendedEntityType mob, LivingEntity entity)
 	{
-		if (mob == null)
-			return;
-		
-		if (mob.hasParent())
-			decrementMobCount(mob.getParent(), entity);
-		
-		// Decrement the MobTypes count
-		decrementMobCount(mob.getMobType(entity));
-		
-		if (individualMobCounts == null)
-			return;
-		
-		// Decrement the mobs count if we should be counting it
-		if (individualMobCounts[mob.ordinal()] != -1)
-			--individualMobCounts[mob.ordinal()];
-	}
-
-	private void incrementMobCount(MobType mob)
-	{
-		if (mob == null)
-			return;
-		
-		++mobCounts[mob.ordinal()];
-	}
-	
-	private void decrementMobCount(MobType mob)
-	{
-		if (mob == null)
-			return;
-		--mobCounts[mob.ordinal()];
+		removeMob(entity);
 	}
 
 	public void incrementChunkCount()
@@ -377,4 +607,71 @@ public class MMWorld
 	{
 		--numChunks;
 	}
+	
+	/**
+	 * @return The number of recounts which have been compared against the tracked counts
+	 */
+	public int getRecounts()
+	{
+		return recounts;
+	}
+	
+	/**
+	 * @return The total difference between the tracked and recounted MobType counts in the last recount
+	 */
+	public int getLastDrift()
+	{
+		return lastDrift;
+	}
+	
+	/**
+	 * @return The total difference between the tracked and recounted MobType counts over all recounts
+	 */
+	public long getTotalDrift()
+	{
+		return totalDrift;
+	}
+	
+	/**
+	 * @return The total difference between the tracked and recounted counts of limited
+	 * mob types in the last recount (Sub-types also count towards their parent type)
+	 */
+	public int getLastIndividualDrift()
+	{
+		return lastIndividualDrift;
+	}
+	
+	/**
+	 * @return The total difference between the tracked and recounted counts of limited
+	 * mob types over all recounts
+	 */
+	public long getTotalIndividualDrift()
+	{
+		return totalIndividualDrift;
+	}
+	
+	/**
+	 * A mob included in the counts</br>
+	 * Remembers how and where the mob was counted so it can be removed
+	 * from exactly the counts it was added to
+	 */
+	private static class CountedMob
+	{
+		final LivingEntity entity;
+		final ExtendedEntityType type;
+		final MobType mob;
+		/** False if the mob is only included in the chunk counts */
+		final boolean worldCounted;
+		/** The chunk the mob is counted in */
+		long chunk;
+		
+		CountedMob(LivingEntity entity, ExtendedEntityType type, MobType mob, boolean worldCounted, long chunk)
+		{
+			this.entity = entity;
+			this.type = type;
+			this.mob = mob;
+			this.worldCounted = worldCounted;
+			this.chunk = chunk;
+		}
+	}
 }
@@ -8,8 +8,11 @@ import com.forgenz.mobmanager.common.config.AbstractConfig;
 import com.forgenz.mobmanager.spawner.config.Action;
 import com.forgenz.mobmanager.spawner.config.SpawnRequirements;
 import com.forgenz.mobmanager.spawner.config.SpawnerConfig;
+import com.forgenz.mobmanager.spawner.listener.ColumnCacheListener;
 import com.forgenz.mobmanager.spawner.listener.PlayerListener;
+import com.forgenz.mobmanager.spawner.listener.SpawnedMobListener;
 import com.forgenz.mobmanager.spawner.tasks.spawnfinder.SpawnFinder;
+import com.forgenz.mobmanager.spawner.util.MobCounterWheel;
 
 public class SpawnerComponent extends MMComponent
 {
@@ -87,8 +90,18 @@ public class SpawnerComponent extends MMComponent
 		// Create the spawn finder
 		spawnFinder = new SpawnFinder();
 		
+		// Start removing mobs from spawn limits once their cooldowns expire
+		MobCounterWheel.start();
+		
 		// Register the player listener
 		Bukkit.getPluginManager().registerEvents(new PlayerListener(), P.p());
+		
+		// Register the listener which removes dead mobs from spawn limits
+		Bukkit.getPluginManager().registerEvents(new SpawnedMobListener(), P.p());
+		
+		// Register the listener which keeps the column cache up to date
+		if (spawnFinder.getColumnCache() != null)
+			Bukkit.getPluginManager().registerEvents(new ColumnCacheListener(), P.p());
 	}
 
 	@Override
@@ -100,11 +113,14 @@ public class SpawnerComponent extends MMComponent
 			throw new IllegalStateException("MobManager-Spawner was already disabled");
 		}
 		
+		config.clearCache();
 		config = null;
 		
-		spawnFinder.cancel();
+		spawnFinder.shutdown();
 		spawnFinder = null;
 		
+		MobCounterWheel.stop();
+		
 		enabled = false;
 		info("Disabled");
 	}
@@ -155,7 +155,7 @@ public class Action extends AbstractConfig
 			PlayerFinder.findNearbyPlayers(location, messageFinder, nearbyPlayers);
 			if (randomMessage)
 			{
-				String message = messages.get(RandomUtil.i.nextInt(messages.size()));
+				String message = messages.get(RandomUtil.i().nextInt(messages.size()));
 				
 				Matcher matcher = playerPattern.matcher(message);
 				
@@ -47,6 +47,7 @@ import com.forgenz.mobmanager.common.util.RandomLocationGen;
 import com.forgenz.mobmanager.limiter.world.MMWorld;
 import com.forgenz.mobmanager.spawner.util.MobCounter;
 import com.forgenz.mobmanager.spawner.util.MobReference;
+import com.forgenz.mobmanager.spawner.util.PlayerSpawnState;
 
 /**
  * Represents a mob which can be spawned and the chance of it being spawned</br>
@@ -65,6 +66,7 @@ public class Mob extends AbstractConfig
 	private MobCounter maxAliveLimiter;
 
 	public final String playerLimitGroup, regionLimitGroup;
+	public final int playerLimitGroupId;
 	public final int heightOffset;
 	public final boolean bypassMobManagerLimit;
 	public final boolean bypassSpawnLimits;
@@ -83,6 +85,7 @@ public class Mob extends AbstractConfig
 			maxAliveLimiter = new MobCounter(maxAlive, mobCooldown, enforceAllRemovalConditions);
 		
 		playerLimitGroup = getAndSet("PlayerLimitGroup", "").toLowerCase();
+		playerLimitGroupId = PlayerSpawnState.getGroupId(playerLimitGroup);
 		regionLimitGroup = getAndSet("RegionLimitGroup", "").toLowerCase();
 		heightOffset = getAndSet("HeightOffset", 0);
 		bypassMobManagerLimit = getAndSet("BypassMobManagerLimit", false);
@@ -187,6 +190,34 @@ public class Mob extends AbstractConfig
 				|| requirements.met(sLoc.getBlockX() >> 4, sLoc.getBlockZ() >> 4, sLoc.getBlockY(), time, lightLevel, biome, materialBelow, environment);
 	}
 	
+	/**
+	 * Checks if the requirements which change during play are met at the given location</br>
+	 * Height, environment and biome requirements must have already been checked
+	 * using the regions {@link MobEligibility}
+	 * 
+	 * @return True if all the mobs remaining requirements are met
+	 */
+	public boolean dynamicRequirementsMet(World world, Location sLoc, int time, int lightLevel, Material materialBelow)
+	{
+		// If the mobs alive limit is reached we can't spawn any more of this mob
+		if (!withinAliveLimit())
+			return false;
+		
+		// Do we need to check limiter spawn limits?
+		if (!bypassMobManagerLimit)
+		{
+			// Fetch the Limiter world
+			MMWorld mmWorld = MMComponent.getLimiter().getWorld(world);
+			
+			// If the world exists and has met the mob limit for the given mob we can't spawn this mob
+			if (mmWorld != null && !mmWorld.withinMobLimit(getMobType(), null))
+				return false;
+		}
+		
+		return requirements == null
+				|| requirements.meetsDynamicRequirements(sLoc.getBlockX() >> 4, sLoc.getBlockZ() >> 4, time, lightLevel, materialBelow);
+	}
+	
 	public boolean addSpawnedMob(MobReference mobRef)
 	{
 		return !mobRef.isValid() || maxAliveLimiter == null || maxAliveLimiter.add(mobRef);
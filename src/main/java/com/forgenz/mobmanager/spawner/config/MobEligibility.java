@@ -0,0 +1,230 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.spawner.config;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.bukkit.World.Environment;
+import org.bukkit.block.Biome;
+
+/**
+ * Precompiled sets of the mobs in a region which meet their height,
+ * environment and biome requirements</br>
+ * Each set is a bitset where bit 'i' represents the 'i'th mob in the region
+ * <p>
+ * The biome, environment and height band sets are stored separately and combined
+ * when fetching candidates, which is a handful of bitwise ANDs per lookup
+ * <p>
+ * Never modified once created, so it is safe to use from any thread
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class MobEligibility
+{
+	private static final Biome[] BIOMES = Biome.values();
+	private static final Environment[] ENVIRONMENTS = Environment.values();
+	
+	private final int words;
+	
+	/** Indexed by Environment ordinal */
+	private final long[][] environmentMasks;
+	/** Indexed by Biome ordinal, the last set is used for null biomes */
+	private final long[][] biomeMasks;
+	/** The first Y coordinate of each height band */
+	private final int[] bandStarts;
+	private final long[][] bandMasks;
+	
+	/** Mobs which have their requirements checked after being picked */
+	private final long[] delayedMask;
+	private final long[] wideMask, tallMask;
+	/** Mobs which can spawn outside of player and region limits */
+	private final long[] bypassMask;
+	
+	public MobEligibility(List<Mob> mobs)
+	{
+		words = (mobs.size() + 63) >> 6;
+		
+		environmentMasks = new long[ENVIRONMENTS.length][words];
+		biomeMasks = new long[BIOMES.length + 1][words];
+		
+		delayedMask = new long[words];
+		wideMask = new long[words];
+		tallMask = new long[words];
+		bypassMask = new long[words];
+		
+		// Find the Y coordinates where a mobs height requirements change
+		TreeSet<Integer> boundaries = new TreeSet<Integer>();
+		boundaries.add(Integer.MIN_VALUE);
+		for (Mob mob : mobs)
+		{
+			SpawnRequirements r = mob.getRequirements();
+			if (r != null)
+			{
+				boundaries.add(r.getMinY());
+				if (r.getMaxY() < Integer.MAX_VALUE)
+					boundaries.add(r.getMaxY() + 1);
+			}
+		}
+		
+		bandStarts = new int[boundaries.size()];
+		int band = 0;
+		for (int start : boundaries)
+			bandStarts[band++] = start;
+		bandMasks = new long[bandStarts.length][words];
+		
+		for (int i = 0; i < mobs.size(); ++i)
+		{
+			Mob mob = mobs.get(i);
+			SpawnRequirements r = mob.getRequirements();
+			
+			for (Environment environment : ENVIRONMENTS)
+			{
+				if (r == null || r.meetsEnvironmentRequirements(environment))
+					set(environmentMasks[environment.ordinal()], i);
+			}
+			
+			for (Biome biome : BIOMES)
+			{
+				if (r == null || r.meetsBiomeRequirements(biome))
+					set(biomeMasks[biome.ordinal()], i);
+			}
+			if (r == null || r.meetsBiomeRequirements(null))
+				set(biomeMasks[BIOMES.length], i);
+			
+			// A mobs height requirement can't change inside a band, so checking the start is enough
+			for (band = 0; band < bandStarts.length; ++band)
+			{
+				if (r == null || r.meetsHeightRequirements(bandStarts[band]))
+					set(bandMasks[band], i);
+			}
+			
+			if (mob.delayRequirementsCheck)
+				set(delayedMask, i);
+			if (mob.getMobType().isWide())
+				set(wideMask, i);
+			if (mob.getMobType().isTall())
+				set(tallMask, i);
+			if (mob.bypassSpawnLimits)
+				set(bypassMask, i);
+		}
+	}
+	
+	/**
+	 * Fetches the set of mobs which meet their height, environment and biome requirements
+	 * 
+	 * @param includeDelayed If true mobs which delay their requirements check are always included
+	 * 
+	 * @return A new bitset of candidate mobs
+	 */
+	public long[] getCandidates(int y, Environment environment, Biome biome, boolean includeDelayed)
+	{
+		long[] environmentMask = environmentMasks[environment.ordinal()];
+		long[] biomeMask = biomeMasks[biome != null ? biome.ordinal() : BIOMES.length];
+		long[] bandMask = bandMasks[getBand(y)];
+		
+		long[] candidates = new long[words];
+		for (int i = 0; i < words; ++i)
+		{
+			candidates[i] = environmentMask[i] & biomeMask[i] & bandMask[i];
+			if (includeDelayed)
+				candidates[i] |= delayedMask[i];
+		}
+		
+		return candidates;
+	}
+	
+	/**
+	 * Removes mobs which can't spawn at the location due to its size or spawn limits
+	 * 
+	 * @param candidates The set of mobs to filter
+	 * @param wideLoc True if the location has room for wide mobs
+	 * @param tallLoc True if the location has room for tall mobs
+	 * @param outsideSpawnLimits True if player or region limits have been met
+	 */
+	public void filter(long[] candidates, boolean wideLoc, boolean tallLoc, boolean outsideSpawnLimits)
+	{
+		for (int i = 0; i < words; ++i)
+		{
+			if (!wideLoc)
+				candidates[i] &= ~wideMask[i];
+			if (!tallLoc)
+				candidates[i] &= ~tallMask[i];
+			if (outsideSpawnLimits)
+				candidates[i] &= bypassMask[i];
+		}
+	}
+	
+	/**
+	 * @return The number of height bands
+	 */
+	public int getBandCount()
+	{
+		return bandStarts.length;
+	}
+	
+	/**
+	 * Finds the height band containing the given Y coordinate
+	 */
+	private int getBand(int y)
+	{
+		int index = Arrays.binarySearch(bandStarts, y);
+		// If y is not a band start, binarySearch returns (-(insertion point) - 1)
+		return index >= 0 ? index : -index - 2;
+	}
+	
+	private static void set(long[] bitset, int index)
+	{
+		bitset[index >> 6] |= 1L << index;
+	}
+	
+	/**
+	 * Fetches the index of the next set bit at or after the given index
+	 * 
+	 * @return The index of the next set bit, or -1 if there are none
+	 */
+	public static int nextSetBit(long[] bitset, int index)
+	{
+		int word = index >> 6;
+		if (word >= bitset.length)
+			return -1;
+		
+		long bits = bitset[word] & (-1L << index);
+		
+		while (true)
+		{
+			if (bits != 0)
+				return (word << 6) + Long.numberOfTrailingZeros(bits);
+			if (++word >= bitset.length)
+				return -1;
+			bits = bitset[word];
+		}
+	}
+}
@@ -29,6 +29,7 @@
 package com.forgenz.mobmanager.spawner.config;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -46,11 +47,13 @@ import com.forgenz.mobmanager.MMComponent;
 import com.forgenz.mobmanager.common.config.AbstractConfig;
 import com.forgenz.mobmanager.common.util.MiscUtil;
 import com.forgenz.mobmanager.common.util.RandomUtil;
+import com.forgenz.mobmanager.common.util.WeightedSampler;
 import com.forgenz.mobmanager.spawner.config.regions.GlobalRegion;
 import com.forgenz.mobmanager.spawner.config.regions.PointCircleRegion;
 import com.forgenz.mobmanager.spawner.config.regions.PointSquareRegion;
 import com.forgenz.mobmanager.spawner.util.MobCounter;
 import com.forgenz.mobmanager.spawner.util.MobReference;
+import com.forgenz.mobmanager.spawner.util.PlayerSpawnState;
 import com.forgenz.mobmanager.spawner.util.MobSpawner;
 
 /**
@@ -70,10 +73,12 @@ public abstract class Region extends AbstractConfig
 	
 	private MobCounter maxAliveLimiter;
 	private HashMap<String, MobCounter> groupedMaxAliveLimiters;
-	private HashMap<String, Integer> groupedPlayerMobLimits;
+	/** Limits for each PlayerLimitGroup indexed by group id */
+	private int[] groupedPlayerMobLimits;
 	
 	
 	private final List<Mob> mobs;
+	private final MobEligibility eligibility;
 	
 	public final boolean hasRegionLimitBypass;
 	
@@ -102,9 +107,13 @@ public abstract class Region extends AbstractConfig
 			// Limits above 0 are valid
 			if (limit > 0)
 			{
+				int groupId = PlayerSpawnState.getGroupId(key.toLowerCase());
+				
 				if (groupedPlayerMobLimits == null)
-					groupedPlayerMobLimits = new HashMap<String, Integer>();
-				groupedPlayerMobLimits.put(key.toLowerCase(), limit);
+					groupedPlayerMobLimits = new int[groupId + 1];
+				else if (groupId >= groupedPlayerMobLimits.length)
+					groupedPlayerMobLimits = Arrays.copyOf(groupedPlayerMobLimits, groupId + 1);
+				groupedPlayerMobLimits[groupId] = limit;
 			}
 		}
 		
@@ -151,16 +160,19 @@ public abstract class Region extends AbstractConfig
 			// Parse the mob config
 			Mob mob = Mob.setup(mobConfig, this);
 			if (mob != null)
+			{
 				mobs.add(mob);
-			
-			if (mob.bypassSpawnLimits)
-				hasRegionLimitBypass = true;
+				
+				if (mob.bypassSpawnLimits)
+					hasRegionLimitBypass = true;
+			}
 		}
 		set("Mobs", mobConfigs);
 		
 		this.hasRegionLimitBypass = hasRegionLimitBypass;
 		
 		this.mobs = Collections.unmodifiableList(mobs);
+		this.eligibility = new MobEligibility(this.mobs);
 		
 		super.clearCfg();
 	}
@@ -169,6 +181,19 @@ public abstract class Region extends AbstractConfig
 
 	public abstract boolean withinRegion(Location location);
 	
+	/**
+	 * Fetches the horizontal area the region covers</br>
+	 * Used to index regions so every region does not need to be checked
+	 * 
+	 * @param bounds Array to store minX, minZ, maxX and maxZ in (inclusive)
+	 * 
+	 * @return False if the region is not limited to an area
+	 */
+	public boolean getBounds(int[] bounds)
+	{
+		return false;
+	}
+	
 	public int getMaxBlockRange(int yHeight)
 	{
 		return yHeight > undergroundHeight ? maxBlockRange : maxUndergroundBlockRange;
@@ -200,14 +225,12 @@ public abstract class Region extends AbstractConfig
 		return false;
 	}
 	
-	public int getPlayerGroupMobLimit(String playerLimitGroup)
+	public int getPlayerGroupMobLimit(int playerLimitGroupId)
 	{
-		if (groupedPlayerMobLimits == null)
+		if (groupedPlayerMobLimits == null || playerLimitGroupId < 0 || playerLimitGroupId >= groupedPlayerMobLimits.length)
 			return 0;
 		
-		Integer limit = groupedPlayerMobLimits.get(playerLimitGroup);
-		
-		return limit != null ? limit : 0;
+		return groupedPlayerMobLimits[playerLimitGroupId];
 	}
 	
 	/**
@@ -217,12 +240,9 @@ public abstract class Region extends AbstractConfig
 	{
 		List<Mob> mobList = new ArrayList<Mob>(mobs.size());
 		
-		for (Mob mob : mobs)
-		{
-			SpawnRequirements r = mob.getRequirements();
-			if (r == null || (r.meetsHeightRequirements(y) && r.meetsEnvironmentRequirements(environment) && r.meetsBiomeRequirements(biome)))
-				mobList.add(mob);
-		}
+		long[] candidates = eligibility.getCandidates(y, environment, biome, false);
+		for (int i = MobEligibility.nextSetBit(candidates, 0); i >= 0; i = MobEligibility.nextSetBit(candidates, i + 1))
+			mobList.add(mobs.get(i));
 		
 		return mobList;
 	}
@@ -285,7 +305,7 @@ public abstract class Region extends AbstractConfig
 			return null;
 		
 		// Fetch a random mob from the list of spawnable mobs
-		Mob mob = getMob(spawnableMobs, getTotalChance(spawnableMobs));
+		Mob mob = getMob(spawnableMobs);
 		
 		// If the mob is null, or the entity type is invalid return false :'(
 		if (mob == null || mob.getMobType().getBukkitEntityType() == null)
@@ -317,22 +337,17 @@ public abstract class Region extends AbstractConfig
 		// Initialise the list
 		ArrayList<Mob> spawnableMobs = MMComponent.getSpawner().getConfig().getCachedList();
 		
-		for (Mob mob : mobs)
+		// Fetch the mobs which meet their height, environment and biome requirements
+		long[] candidates = eligibility.getCandidates(sLoc.getBlockY(), environment, biome, true);
+		// Remove mobs which don't fit in the location or can't bypass spawn limits
+		eligibility.filter(candidates, wideLoc, tallLoc, outsideSpawnLimits);
+		
+		for (int i = MobEligibility.nextSetBit(candidates, 0); i >= 0; i = MobEligibility.nextSetBit(candidates, i + 1))
 		{
-			// If we are operating outside spawn limits the mob must be able to bypass those limits
-			if (outsideSpawnLimits && !mob.bypassSpawnLimits)
-				continue;
-			
-			// Don't allow wide mobs to spawn in a tight location
-			if (mob.getMobType().isWide() && !wideLoc)
-				continue;
-			
-			// Don't allow tall mobs to spawn in a tight location
-			if (mob.getMobType().isTall() && !tallLoc)
-				continue;
+			Mob mob = mobs.get(i);
 			
-			// Check if the requirements are met
-			if (!mob.requirementsMet(false, world, sLoc, time, lightLevel, biome, materialBelow, environment))
+			// Check if the remaining requirements are met
+			if (!mob.delayRequirementsCheck && !mob.dynamicRequirementsMet(world, sLoc, time, lightLevel, materialBelow))
 				continue;
 			
 			// Check if the mob is assigned to a player spawn limit
@@ -355,49 +370,25 @@ public abstract class Region extends AbstractConfig
 		return spawnableMobs;
 	}
 	
-	/**
-	 * Calculates the total of chances
-	 * 
-	 * @param mobs List of mobs to total the chances of
-	 * 
-	 * @return Sum of all chances
-	 */
-	private int getTotalChance(final List<Mob> mobs)
-	{
-		int chance = 0;
-		for (Mob mob : mobs)
-			chance += mob.spawnChance;
-		return chance;
-	}
-	
-	
 	/**
 	 * Fetches a random mob from the given list</br>
 	 * Uses the mobs chances to pick mobs
 	 * 
 	 * @param mobs List of mobs to pick from
-	 * @param totalChance Sum of all mob chances in the list
 	 * 
 	 * @return A single mob
 	 */
-	private Mob getMob(final List<Mob> mobs, int totalChance)
+	private Mob getMob(final List<Mob> mobs)
 	{
-		// Get a random number between 0 and the 
-		int chance = RandomUtil.i.nextInt(totalChance);
+		// Build the running total of chances
+		int[] cumulative = new int[mobs.size()];
+		int totalChance = 0;
+		for (int i = 0; i < cumulative.length; ++i)
+			cumulative[i] = totalChance += Math.max(mobs.get(i).spawnChance, 0);
 		
-		for (Mob mob : mobs)
-		{
-			// Minus the chance of the mob from the total
-			chance -= mob.spawnChance;
-			
-			// Once 'chance' reduces below 0 we have found our mob
-			if (chance < 0)
-				return mob;
-		}
+		int index = WeightedSampler.sample(RandomUtil.i(), cumulative, cumulative.length);
 		
-		// Waht
-		MMComponent.getSpawner().warning("Mob chances failed (That should never happen)");
-		return null;
+		return index >= 0 ? mobs.get(index) : null;
 	}
 	
 	@Override
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.spawner.config;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.bukkit.Location;
+
+import com.forgenz.mobmanager.common.util.LongObjectMap;
+
+/**
+ * Grid of region bounds used to find which regions contain a location</br>
+ * Only regions whose bounds overlap the cell containing a location are checked
+ * <p>
+ * The index is never modified once created, so it is safe to use from any thread
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class RegionIndex
+{
+	/** Cells are 64x64 blocks (4x4 chunks) */
+	public static final int CELL_SHIFT = 6;
+	/** Regions covering more cells than this are checked for every location */
+	private static final int MAX_REGION_CELLS = 1024;
+	
+	private static final int[] NO_REGIONS = new int[0];
+	
+	private final Region[] regions;
+	private final LongObjectMap<int[]> cells = new LongObjectMap<int[]>();
+	/** Regions which are too large or have no bounds */
+	private final int[] largeRegions;
+	
+	/**
+	 * Indexes the given regions</br>
+	 * Regions are always returned in the order they are given
+	 */
+	public RegionIndex(List<Region> regionList)
+	{
+		regions = regionList.toArray(new Region[regionList.size()]);
+		
+		int[] large = new int[regions.length];
+		int largeCount = 0;
+		int[] bounds = new int[4];
+		
+		for (int i = 0; i < regions.length; ++i)
+		{
+			if (!regions[i].getBounds(bounds))
+			{
+				large[largeCount++] = i;
+				continue;
+			}
+			
+			int minX = bounds[0] >> CELL_SHIFT, minZ = bounds[1] >> CELL_SHIFT;
+			int maxX = bounds[2] >> CELL_SHIFT, maxZ = bounds[3] >> CELL_SHIFT;
+			
+			if ((long) (maxX - minX + 1) * (maxZ - minZ + 1) > MAX_REGION_CELLS)
+			{
+				large[largeCount++] = i;
+				continue;
+			}
+			
+			// Add the region to every cell it overlaps
+			for (int x = minX; x <= maxX; ++x)
+			{
+				for (int z = minZ; z <= maxZ; ++z)
+				{
+					long key = LongObjectMap.key(x, z);
+					int[] cell = cells.get(key);
+					
+					if (cell == null)
+					{
+						cell = new int[] { i };
+					}
+					else
+					{
+						cell = Arrays.copyOf(cell, cell.length + 1);
+						cell[cell.length - 1] = i;
+					}
+					
+					cells.put(key, cell);
+				}
+			}
+		}
+		
+		largeRegions = largeCount > 0 ? Arrays.copyOf(large, largeCount) : NO_REGIONS;
+	}
+	
+	/**
+	 * Fetches all regions which this location is within and adds them to the given list
+	 * 
+	 * @param location The given location
+	 * @param regionList List to add regions to
+	 */
+	public void getRegions(Location location, List<Region> regionList)
+	{
+		int[] cell = cells.get(location.getBlockX() >> CELL_SHIFT, location.getBlockZ() >> CELL_SHIFT);
+		if (cell == null)
+			cell = NO_REGIONS;
+		
+		// Merge the cells regions with the large regions keeping the original order
+		int i = 0, j = 0;
+		while (i < cell.length || j < largeRegions.length)
+		{
+			int index;
+			if (j >= largeRegions.length || (i < cell.length && cell[i] < largeRegions[j]))
+				index = cell[i++];
+			else
+				index = largeRegions[j++];
+			
+			if (regions[index].withinRegion(location))
+				regionList.add(regions[index]);
+		}
+	}
+	
+	/**
+	 * @return The number of regions in the index
+	 */
+	public int getRegionCount()
+	{
+		return regions.length;
+	}
+	
+	/**
+	 * @return The number of cells which contain at least one region
+	 */
+	public int getCellCount()
+	{
+		return cells.size();
+	}
+}
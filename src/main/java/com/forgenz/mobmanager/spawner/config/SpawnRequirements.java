@@ -248,11 +248,25 @@ public class SpawnRequirements extends AbstractConfig
 	 * @return True if the requirements are met
 	 */
 	public boolean met(int chunkX, int chunkZ, int y, int time, int lightLevel, Biome biome, Material materialBelow, Environment environment)
+	{
+		return meetsHeightRequirements(y)
+				&& meetsEnvironmentRequirements(environment) 
+				&& meetsBiomeRequirements(biome)
+				&& meetsDynamicRequirements(chunkX, chunkZ, time, lightLevel, materialBelow);
+	}
+	
+	/**
+	 * Checks the requirements which are not precompiled by {@link MobEligibility}</br>
+	 * Height, environment and biome requirements are not checked
+	 * 
+	 * @return True if the requirements are met
+	 */
+	public boolean meetsDynamicRequirements(int chunkX, int chunkZ, int time, int lightLevel, Material materialBelow)
 	{
 		if (minLight > lightLevel || maxLight < lightLevel)
 				return false;
 		
-		if (!meetsHeightRequirements(y) || !meetsTimeRequirements(time))
+		if (!meetsTimeRequirements(time))
 			return false;
 		
 		if (requireOpaqueBlock && !materialBelow.isSolid())
@@ -261,9 +275,23 @@ public class SpawnRequirements extends AbstractConfig
 		if (!meetsSlimeLikeSpawnRequirements(chunkX, chunkZ))
 			return false;
 		
-		return meetsEnvironmentRequirements(environment) 
-				&& meetsBiomeRequirements(biome)
-				&& meetsBlockRequirements(materialBelow);
+		return meetsBlockRequirements(materialBelow);
+	}
+	
+	/**
+	 * Fetches the lowest Y coordinate which meets the height requirements
+	 */
+	public int getMinY()
+	{
+		return minY;
+	}
+	
+	/**
+	 * Fetches the highest Y coordinate which meets the height requirements
+	 */
+	public int getMaxY()
+	{
+		return maxY;
 	}
 
 	public static void resetConfigFlag()
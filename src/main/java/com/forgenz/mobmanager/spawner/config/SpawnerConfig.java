@@ -42,6 +42,7 @@ import org.bukkit.configuration.file.FileConfiguration;
 import com.forgenz.mobmanager.common.config.AbstractConfig;
 import com.forgenz.mobmanager.common.util.RandomUtil;
 import com.forgenz.mobmanager.common.util.ThreadCache;
+import com.forgenz.mobmanager.common.util.WeightedSampler;
 import com.forgenz.mobmanager.spawner.SpawnerComponent;
 import com.forgenz.mobmanager.spawner.config.Region.RegionType;
 
@@ -63,7 +64,12 @@ public class SpawnerConfig extends AbstractConfig
 	public final int spawnFinderThreads;
 	public final int ticksPerSpawn;
 	public final int spawnGenerationAttempts;
+	public final int columnCacheSize;
+	public final long syncSpawnBudgetNanos;
+	public final int maxSyncSpawnsPerRun;
+	public final long syncSpawnTimeoutNanos;
 	public final int mobDistanceForLimitRemoval;
+	public final boolean enablePlayerMobLimits;
 	
 	public SpawnerConfig()
 	{
@@ -76,7 +82,13 @@ public class SpawnerConfig extends AbstractConfig
 		ticksPerSpawn = getAndSet("TicksPerSpawn", 100);
 		
 		spawnGenerationAttempts = getAndSet("SpawnGenerateAttempts", 3);
+		columnCacheSize = getAndSet("ColumnCacheSize", 2048);
+		
+		syncSpawnBudgetNanos = (long) (getAndSet("SyncSpawnTimeBudget", 2.0D) * 1000000.0D);
+		maxSyncSpawnsPerRun = getAndSet("MaxSyncSpawnsPerRun", 50);
+		syncSpawnTimeoutNanos = getAndSet("SyncSpawnTimeout", 40) * 50000000L;
 		mobDistanceForLimitRemoval = (int) Math.pow(getAndSet("MobDistanceForLimitRemoval", 64), 2);
+		enablePlayerMobLimits = getAndSet("EnablePlayerMobLimits", false);
 		
 		removePlayersMobOnDisconnect = getAndSet("RemovePlayerMobsOnDisconnect", true);
 		ignoreCreativePlayers = getAndSet("IgnoreCreativePlayers", true);
@@ -95,6 +107,14 @@ public class SpawnerConfig extends AbstractConfig
 		saveConfig("", SpawnerComponent.SPAWNER_CONFIG_NAME, cfg);
 	}
 	
+	/**
+	 * Drops the cached lists of every thread
+	 */
+	public void clearCache()
+	{
+		regionListCache.clear();
+	}
+	
 	@SuppressWarnings("unchecked")
 	protected <T> ArrayList<T> getCachedList()
 	{
@@ -205,40 +225,15 @@ public class SpawnerConfig extends AbstractConfig
 	 */
 	private Region pickRegion(ArrayList<Region> regionList)
 	{
-		// Fetch a random value between 0 and the total priority
-		int chance = getTotalRegionPriority(regionList);
-		
-		if (chance == 0)
-			return globalRegion;
+		// Build the running total of priorities
+		int[] cumulative = new int[regionList.size()];
+		int totalPriority = 0;
+		for (int i = 0; i < cumulative.length; ++i)
+			cumulative[i] = totalPriority += regionList.get(i).priority;
 		
-		int val = RandomUtil.i.nextInt(getTotalRegionPriority(regionList));
+		int index = WeightedSampler.sample(RandomUtil.i(), cumulative, cumulative.length);
 		
-		for (Region region : regionList)
-		{
-			// Remove the current regions priority until val is less than 0
-			val -= region.priority;
-			// Once val is less than 0 we have found our region
-			if (val < 0)
-				return region;
-		}
-		
-		// Should NEVER reach this point. Return global region just in case.
-		return globalRegion;
-	}
-	
-	/**
-	 * Calculates the sum of all the given regions priorities
-	 * 
-	 * @param regionList List of regions
-	 * @return Total priority
-	 */
-	private int getTotalRegionPriority(ArrayList<Region> regionList)
-	{
-		int pri = 0;
-		// Add the priorities of each region
-		for (Region region : regionList)
-			pri += region.priority;
-		// Return the total
-		return pri;
+		// If no region has a priority use the global region
+		return index >= 0 ? regionList.get(index) : globalRegion;
 	}
 }
@@ -46,7 +46,7 @@ public class SpawnerWorldConfig extends AbstractConfig
 {
 	public final boolean spawnMobs;
 	
-	private final ArrayList<Region> regions;
+	private final RegionIndex regions;
 	
 	protected SpawnerWorldConfig(World world)
 	{
@@ -73,7 +73,7 @@ public class SpawnerWorldConfig extends AbstractConfig
 		}
 		
 		ConfigurationSection regionsCfg = getConfigurationSection("Regions");
-		regions = new ArrayList<Region>();
+		ArrayList<Region> regions = new ArrayList<Region>();
 		
 		for (RegionType type : RegionType.values())
 		{
@@ -96,6 +96,8 @@ public class SpawnerWorldConfig extends AbstractConfig
 			}
 		}		
 		
+		this.regions = new RegionIndex(regions);
+		
 		super.clearCfg();
 		
 		copyHeader(cfg, "Spawner_WorldConfigHeader.txt", "Spawner World Config\n");
@@ -110,13 +112,7 @@ public class SpawnerWorldConfig extends AbstractConfig
 	 */
 	public void getRegions(Location location, List<Region> regionList)
 	{
-		// Iterate through every region
-		for (Region region : regions)
-		{
-			// Check if the location is within the given region
-			if (region.withinRegion(location))
-				// Add the region to the list
-				regionList.add(region);
-		}
+		// Only check regions which are near the location
+		regions.getRegions(location, regionList);
 	}
 }
@@ -41,6 +41,8 @@ public abstract class PointRegion extends Region
 	protected int x;
 	protected int z;
 	protected int radius;
+	/** The radius before any subclasses modify it */
+	private int blockRadius;
 	
 	public PointRegion(ConfigurationSection cfg, RegionType type)
 	{
@@ -56,6 +58,17 @@ public abstract class PointRegion extends Region
 		z = getAndSet("Z", 0);
 		
 		radius = getAndSet("Radius", 0);
+		blockRadius = Math.abs(radius);
+	}
+	
+	@Override
+	public boolean getBounds(int[] bounds)
+	{
+		bounds[0] = x - blockRadius;
+		bounds[1] = z - blockRadius;
+		bounds[2] = x + blockRadius;
+		bounds[3] = z + blockRadius;
+		return true;
 	}
 	
 	@Override
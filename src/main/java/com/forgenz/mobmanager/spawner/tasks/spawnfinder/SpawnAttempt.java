@@ -39,24 +39,24 @@ import org.bukkit.entity.Player;
 import com.forgenz.mobmanager.MMComponent;
 import com.forgenz.mobmanager.common.util.LocationCache;
 import com.forgenz.mobmanager.common.util.RandomLocationGen;
+import com.forgenz.mobmanager.common.util.RandomLocationGen.LocationFilter;
 import com.forgenz.mobmanager.spawner.config.Region;
+import com.forgenz.mobmanager.spawner.tasks.spawnfinder.SpawnChunkCache.WorldSnapshot;
 import com.forgenz.mobmanager.spawner.util.MobSpawner;
 
 /**
  * Handles each step of a SpawnAttempt
  */
-public class SpawnAttempt implements Runnable
+public class SpawnAttempt
 {
 	public enum AttemptState
 	{
 		/** Starts the attempt */
 		INITIALISE,
 		/** Generates a random location */
-		GENERATE(true),
+		GENERATE,
 		/** Fetches the region of the generated location */
 		GET_REGION,
-		/** Fetches the light at that location */
-		GET_LOCATION_INFO(true),
 		/** Picks a mob and spawns it */
 		PREPARE_MOB,
 		/** Spawns the mob */
@@ -91,6 +91,8 @@ public class SpawnAttempt implements Runnable
 	
 	private final SpawnAttemptExecutor saExecutor;
 	private final Player player;
+	private final WorldSnapshot snapshot;
+	private final LocationFilter filter;
 	private final int maxRange, minRange, heightRange;
 	private boolean outsideSpawnLimits;
 	
@@ -109,10 +111,15 @@ public class SpawnAttempt implements Runnable
 	
 	private MobSpawner spawner;
 	
-	public SpawnAttempt(SpawnAttemptExecutor saExecutor, Player player, int maxRange, int minRange, int heightRange, boolean outsideSpawnLimits)
+	/** The time the attempt was queued to run its sync states (System.nanoTime) */
+	protected long queuedAt;
+	
+	public SpawnAttempt(SpawnAttemptExecutor saExecutor, Player player, WorldSnapshot snapshot, LocationFilter filter, int maxRange, int minRange, int heightRange, boolean outsideSpawnLimits)
 	{
 		this.saExecutor = saExecutor;
 		this.player = player;
+		this.snapshot = snapshot;
+		this.filter = filter;
 		
 		this.maxRange = maxRange;
 		this.minRange = minRange;
@@ -120,11 +127,14 @@ public class SpawnAttempt implements Runnable
 		this.outsideSpawnLimits = outsideSpawnLimits;
 	}
 	
-	@Override
-	public void run()
+	/**
+	 * Executes the attempts current state and moves it on to the next state</br>
+	 * The caller is responsible for running the attempt in the correct thread
+	 */
+	protected void process()
 	{
 		// If the player is invalid there is no need to continue
-		if (!player.isValid())
+		if (finish(!player.isValid()))
 			return;
 
 		try
@@ -140,9 +150,6 @@ public class SpawnAttempt implements Runnable
 			case GET_REGION:
 				stateMethodGetRegion();
 				break;
-			case GET_LOCATION_INFO:
-				stateMethodGetLocationInfo();
-				break;
 			case PREPARE_MOB:
 				stateMethodPrepareMob();
 				break;
@@ -160,24 +167,8 @@ public class SpawnAttempt implements Runnable
 			return;
 		}
 		
-		// Fetch the next state
-		AttemptState nextState = currentState.getNext();
-		
-		// Check if we are not finished
-		if (nextState != AttemptState.FINISH)
-		{
-			// Check if the next state can be executed now
-//			boolean runNow = nextState.sync == currentState.sync;
-			// Update the current state
-			currentState = nextState;
-			
-			// Execute the task
-			// If the next state can be run in the same thread we execute it right away
-//			if (runNow)
-//				run();
-//			else
-			saExecutor.addTask(this, currentState.sync);
-		}
+		// Move on to the next state
+		currentState = currentState.getNext();
 	}
 	
 	public AttemptState getState()
@@ -200,7 +191,26 @@ public class SpawnAttempt implements Runnable
 	}
 	
 	/**
-	 * Generates a random location
+	 * Stops the attempt without running any more states
+	 */
+	protected void cancel()
+	{
+		finish(true);
+		releaseLocation();
+	}
+	
+	/**
+	 * Gives the spawn location back to the LocationCache once the attempt is finished
+	 */
+	protected void releaseLocation()
+	{
+		LocationCache.release(spawnLocation);
+		spawnLocation = null;
+	}
+	
+	/**
+	 * Generates a random location</br>
+	 * All block lookups are done using the chunk snapshots for this spawn cycle
 	 */
 	private void stateMethodGenerate()
 	{
@@ -209,16 +219,21 @@ public class SpawnAttempt implements Runnable
 		player.getLocation(cache.playerLoc);
 		playerY = cache.playerLoc.getBlockY();
 		
-		Location spawnLoc = RandomLocationGen.getLocation(true, true, saExecutor.cfg.spawnGenerationAttempts, cache.playerLoc, maxRange, minRange, heightRange, cache.cacheLoc);
+		// If the player has left the world the snapshots were taken in we are finished
+		if (finish(cache.playerLoc.getWorld() != snapshot.world))
+			return;
+		
+		Location spawnLoc = RandomLocationGen.getLocation(true, saExecutor.cfg.spawnGenerationAttempts, cache.playerLoc, maxRange, minRange, heightRange, cache.cacheLoc, snapshot.chunks, snapshot.takenAt, saExecutor.spawnFinder.getColumnCache(), cache.cacheList, filter, cache.candidates);
 
 		// If the location is the players location then we don't want to spawn the mob 
 		if (!finish(spawnLoc == cache.playerLoc))
 		{
 			spawnLoc.setWorld(cache.playerLoc.getWorld());
 			spawnLocation = LocationCache.getCachedLocation(spawnLoc);
-			Block b = spawnLocation.getBlock();
-			wideLoc = RandomLocationGen.isWideLocation(b);
-			tallLoc = RandomLocationGen.isTallLocation(b);
+			
+			int x = spawnLocation.getBlockX(), y = spawnLocation.getBlockY(), z = spawnLocation.getBlockZ();
+			wideLoc = RandomLocationGen.isWideLocation(snapshot.chunks, x, y, z);
+			tallLoc = RandomLocationGen.isTallLocation(snapshot.chunks, x, y, z);
 		}
 	}
 	
@@ -238,23 +253,29 @@ public class SpawnAttempt implements Runnable
 			outsideSpawnLimits = !spawnRegion.withinAliveLimit();
 		
 		// If we are outside spawn limits and can't ignore them we are finished
-		finish(outsideSpawnLimits && !spawnRegion.ignoreMobLimits());
+		if (finish(outsideSpawnLimits && !spawnRegion.ignoreMobLimits()))
+			return;
+		
+		getLocationInfo();
 	}
 	
 	/**
 	 * Fetch information about the spawn location to</br>
 	 * be used to test requirements
 	 */
-	private void stateMethodGetLocationInfo()
+	private void getLocationInfo()
 	{
-		Block b = spawnLocation.getBlock();
+		int x = spawnLocation.getBlockX(), y = spawnLocation.getBlockY(), z = spawnLocation.getBlockZ();
 		
-		lightLevel = b.getLightLevel();
-		biome = b.getBiome();
-		materialBelow = b.getRelative(BlockFace.DOWN).getType();
+		lightLevel = RandomLocationGen.getLightLevel(snapshot.chunks, x, y, z, snapshot.skyDarkness);
+		biome = RandomLocationGen.getBiome(snapshot.chunks, x, z);
+		materialBelow = RandomLocationGen.getMaterial(snapshot.chunks, x, y - 1, z);
 		
-		time = (int) spawnLocation.getWorld().getTime();
-		environment = spawnLocation.getWorld().getEnvironment();
+		time = snapshot.time;
+		environment = snapshot.environment;
+		
+		// If the location is somehow outside of the snapshots we are finished
+		finish(biome == null || materialBelow == null);
 	}
 	
 	/**
@@ -273,12 +294,11 @@ public class SpawnAttempt implements Runnable
 	 */
 	private void stateMethodSpawn()
 	{
+		// The snapshots may be a few seconds old so make sure the mob still fits
+		Block b = spawnLocation.getBlock();
+		if (!RandomLocationGen.isSafeBlock(b) || !RandomLocationGen.isSafeBlock(b.getRelative(BlockFace.UP)))
+			return;
+		
 		spawner.spawn();
 	}
-	
-	@Override
-	public int hashCode()
-	{
-		return currentState.ordinal();
-	}
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.spawner.tasks.spawnfinder;
+
+import java.util.Arrays;
+
+import com.forgenz.mobmanager.spawner.tasks.spawnfinder.SpawnAttempt.AttemptState;
+
+/**
+ * An array of spawn attempts which are moved through their async states together</br>
+ * Every attempt in the batch runs a state before any attempt runs the next state
+ * <p>
+ * Once the batch has run every async state it can, attempts which are not
+ * finished are passed back to the SpawnAttemptExecutor to run their sync states
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class SpawnAttemptBatch implements Runnable
+{
+	private static final AttemptState[] STATES = AttemptState.values();
+	
+	private final SpawnAttemptExecutor saExecutor;
+	
+	private SpawnAttempt[] attempts;
+	private int size;
+	
+	public SpawnAttemptBatch(SpawnAttemptExecutor saExecutor, int capacity)
+	{
+		this.saExecutor = saExecutor;
+		this.attempts = new SpawnAttempt[Math.max(capacity, 1)];
+	}
+	
+	public void add(SpawnAttempt attempt)
+	{
+		if (size == attempts.length)
+			attempts = Arrays.copyOf(attempts, size << 1);
+		attempts[size++] = attempt;
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	@Override
+	public void run()
+	{
+		// Run each state over the whole batch
+		for (AttemptState state : STATES)
+		{
+			if (state == AttemptState.FINISH)
+				break;
+			
+			if (state.sync)
+				continue;
+			
+			int processed = 0;
+			long start = System.nanoTime();
+			
+			for (int i = 0; i < size; ++i)
+			{
+				if (attempts[i].getState() == state)
+				{
+					attempts[i].process();
+					++processed;
+				}
+			}
+			
+			if (processed > 0)
+				saExecutor.recordStage(state, processed, System.nanoTime() - start);
+		}
+		
+		// Hand the attempts over to the next stage
+		for (int i = 0; i < size; ++i)
+		{
+			if (attempts[i].getState() == AttemptState.FINISH)
+				attempts[i].releaseLocation();
+			else
+				saExecutor.addAttempt(attempts[i]);
+			
+			attempts[i] = null;
+		}
+		
+		size = 0;
+	}
+}
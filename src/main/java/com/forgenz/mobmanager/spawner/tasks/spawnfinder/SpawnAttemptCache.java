@@ -34,6 +34,7 @@ import java.util.List;
 import org.bukkit.Location;
 
 import com.forgenz.mobmanager.common.util.LocationCache;
+import com.forgenz.mobmanager.common.util.RandomLocationGen.CandidateBatch;
 
 /**
  * Contains a set of items which are required to complete a full spawn attempt
@@ -44,6 +45,7 @@ public class SpawnAttemptCache
 {
 	public final Location playerLoc, cacheLoc;
 	public final List<Integer> cacheList;
+	public final CandidateBatch candidates;
 	
 	public SpawnAttemptCache()
 	{
@@ -55,5 +57,6 @@ public class SpawnAttemptCache
 		this.playerLoc = playerLoc;
 		this.cacheLoc = cacheLoc;
 		this.cacheList = cacheList;
+		this.candidates = new CandidateBatch(8);
 	}
 }
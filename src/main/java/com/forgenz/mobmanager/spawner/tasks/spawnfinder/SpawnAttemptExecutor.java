@@ -28,11 +28,14 @@
 
 package com.forgenz.mobmanager.spawner.tasks.spawnfinder;
 
-import java.util.Comparator;
-import java.util.Queue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.bukkit.GameMode;
 import org.bukkit.Location;
@@ -41,53 +44,115 @@ import org.bukkit.entity.Player;
 
 import com.forgenz.mobmanager.MMComponent;
 import com.forgenz.mobmanager.MMComponent.Component;
-import com.forgenz.mobmanager.common.util.LocationCache;
 import com.forgenz.mobmanager.common.util.MMThreadFactory;
 import com.forgenz.mobmanager.common.util.ThreadCache;
 import com.forgenz.mobmanager.limiter.world.MMWorld;
 import com.forgenz.mobmanager.spawner.config.Region;
 import com.forgenz.mobmanager.spawner.config.SpawnerConfig;
+import com.forgenz.mobmanager.spawner.tasks.spawnfinder.SpawnAttempt.AttemptState;
+import com.forgenz.mobmanager.spawner.tasks.spawnfinder.SpawnChunkCache.WorldSnapshot;
 
 /**
  * Handles initialisation and execution of individual spawn attempts
+ * <p>
+ * Players are grouped into spawn zones at the start of each cycle (See {@link SpawnZone}).
+ * Zones are handed to the worker threads gradually so attempts are spread
+ * evenly across TicksPerSpawn rather than all running at once. The chunk
+ * snapshots for each zone are taken as it is handed out, sharing the sync
+ * budget with the sync states
+ * <p>
+ * Async states are run in batches (See {@link SpawnAttemptBatch}).</br>
+ * Attempts waiting for a sync or async state are kept in lock free queues.
+ * Each time the spawn finder runs, waiting async attempts are collected into
+ * batches and waiting sync attempts are run until the sync budget is used up
  */
 public class SpawnAttemptExecutor implements Runnable
 {
+	/** The smallest number of attempts worth giving to another worker thread */
+	private static final int MIN_ASYNC_BATCH = 16;
+	
+
 	protected final SpawnFinder spawnFinder;
 	protected final SpawnerConfig cfg;
-	private final Queue<Player> playerQueue;
+	
+	// The spawn zones for the current cycle, only modified by the main thread
+	private List<SpawnZone> zones = Collections.emptyList();
+	private int nextZone, cycleRuns = 1, cycleAttempts, scheduledAttempts;
+	private volatile long zonesDropped;
+	
+	private final ConcurrentLinkedQueue<SpawnZone> zoneQueue = new ConcurrentLinkedQueue<SpawnZone>();
 	
 	private final MMThreadFactory threadFactory;
 	private ThreadPoolExecutor executor;
 	protected final ThreadCache<SpawnAttemptCache> threadCache;
 	
-	private int currentThreads;
+	private final ConcurrentLinkedQueue<SpawnAttempt> syncQueue = new ConcurrentLinkedQueue<SpawnAttempt>();
+	private final ConcurrentLinkedQueue<SpawnAttempt> asyncQueue = new ConcurrentLinkedQueue<SpawnAttempt>();
+	private final AtomicInteger syncPending = new AtomicInteger(), asyncPending = new AtomicInteger();
 	
-	private final PriorityBlockingQueue<Runnable> syncWorkerQueue;
+	// Sync budget metrics, only modified by the main thread
+	private volatile int maxSyncPending;
+	private volatile long syncOverruns, syncDropped, lastSyncNanos;
 	
-	private int ticksLeft;
+	private final AtomicLongArray stageCounts = new AtomicLongArray(AttemptState.values().length);
+	private final AtomicLongArray stageNanos = new AtomicLongArray(AttemptState.values().length);
 
-	public SpawnAttemptExecutor(SpawnFinder spawnFinder, Queue<Player> playerQueue)
+	public SpawnAttemptExecutor(SpawnFinder spawnFinder)
 	{
 		this.spawnFinder = spawnFinder;
 		this.cfg = MMComponent.getSpawner().getConfig();
-		this.playerQueue = playerQueue;
 		
 		threadFactory = new MMThreadFactory(Component.SPAWNER, "SpawnFinder");
 		this.threadCache = new ThreadCache<SpawnAttemptCache>(SpawnAttemptCache.class);
 		
 		int c = cfg.spawnFinderThreads;
-		Comparator<Object> taskComparator = new Comparator<Object>()
-		{
-			@Override
-			public int compare(Object arg0, Object arg1)
-			{
-				return arg0.hashCode() > arg1.hashCode() ? -1 : 1;
-			}
-			
-		};
-		this.syncWorkerQueue =  new PriorityBlockingQueue<Runnable>(20, taskComparator);
-		this.executor = new ThreadPoolExecutor(c, c, 0L, TimeUnit.NANOSECONDS, new PriorityBlockingQueue<Runnable>(20, taskComparator), threadFactory);
+		this.executor = new ThreadPoolExecutor(c, c, 0L, TimeUnit.NANOSECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+	}
+	
+	/**
+	 * Sets the spawn zones for a new spawn cycle</br>
+	 * The zones are handed to the worker threads over the following runs so
+	 * the attempts are spread evenly across the cycle
+	 * 
+	 * @param zones The zones to spawn mobs in
+	 * @param runs The number of times the executor will run this cycle
+	 */
+	public void startCycle(List<SpawnZone> zones, int runs)
+	{
+		int totalAttempts = 0;
+		for (SpawnZone zone : zones)
+			totalAttempts += zone.attempts;
+		
+		// Zones the last cycle could not snapshot within the budget are skipped
+		if (nextZone < this.zones.size())
+			zonesDropped += this.zones.size() - nextZone;
+		
+		zoneQueue.clear();
+		this.zones = zones;
+		this.nextZone = 0;
+		this.cycleRuns = Math.max(runs, 1);
+		this.cycleAttempts = totalAttempts;
+		this.scheduledAttempts = 0;
+	}
+	
+	/**
+	 * Creates a spawn zone member for the player</br>
+	 * Must be called from the main thread
+	 * 
+	 * @param player The player
+	 * @param playerRegion The region the player is in
+	 * @param playerLoc The players location
+	 */
+	protected SpawnZone.Member createMember(Player player, Region playerRegion, Location playerLoc)
+	{
+		MMWorld world = MMComponent.getLimiter().getWorld(playerLoc.getWorld());
+		int yHeight = getRangeHeight(playerLoc);
+		
+		int maxRange = getMaxRange(playerRegion, playerLoc);
+		int minRange = Math.min(playerRegion.getMinBlockRange(yHeight), maxRange);
+		int heightRange = world != null ? world.getSearchHeight() : 24;
+		
+		return new SpawnZone.Member(player, playerRegion, playerLoc.getWorld(), playerLoc.getBlockX(), playerLoc.getBlockZ(), maxRange, minRange, heightRange);
 	}
 	
 	/**
@@ -97,88 +162,354 @@ public class SpawnAttemptExecutor implements Runnable
 	 */
 	public void execute(int ticksLeft)
 	{
-		boolean runMain = !playerQueue.isEmpty();
+		long deadline = System.nanoTime() + cfg.syncSpawnBudgetNanos;
+		
+		// Run the sync states of attempts which have finished their async states
+		runSyncAttempts(deadline);
+		
+		// Hand out enough zones to keep up with an even spread of attempts across the cycle
+		int target = ticksLeft <= 0 ? Integer.MAX_VALUE : (int) ((long) cycleAttempts * (cycleRuns - ticksLeft) / cycleRuns);
+		int newZones = 0;
 		
-		if (runMain)
+		while (nextZone < zones.size() && scheduledAttempts < target)
 		{
-			// Set ticks left
-			this.ticksLeft = ticksLeft;
+			// Leave the remaining zones for the next run if we are out of time
+			// At least one zone is handed out each run so the cycle always makes progress
+			if (newZones > 0 && cfg.syncSpawnBudgetNanos > 0 && System.nanoTime() >= deadline)
+				break;
 			
-			// Fetch the max number of threads
-			currentThreads = cfg.spawnFinderThreads;
+			SpawnZone zone = zones.get(nextZone++);
+			scheduledAttempts += zone.attempts;
 			
-			// Find a reasonable number of threads to run the main task in
-			for (; currentThreads > 1 && playerQueue.size() / currentThreads <= 2; --currentThreads);
-			
-			// Execute the main tasks
-			for (int i = 0; i < currentThreads; ++i)
-				executor.execute(this);
+			// Take the zones chunk snapshots before the workers can see it
+			zone.snapshot = spawnFinder.getChunkCache().snapshotZone(zone);
+			zoneQueue.add(zone);
+			++newZones;
 		}
-		else
-			currentThreads = 0;
 		
-		// Run any tasks in the worker queue (Probably full)
-		Runnable task;
-		while ((task = syncWorkerQueue.poll()) != null)
-		{
-			task.run();
-		}
+		int threads = Math.min(cfg.spawnFinderThreads, newZones);
+		
+		// Execute the main tasks
+		for (int i = 0; i < threads; ++i)
+			executor.execute(this);
+		
+		// Give attempts waiting for async states to the worker threads
+		startAsyncBatches();
 	}
 	
 	@Override
 	public void run()
 	{
-		int checkPlayers = ticksLeft != 0 ? playerQueue.size() / ticksLeft / currentThreads : playerQueue.size();
-		if (checkPlayers == 0)
-			checkPlayers = playerQueue.size();
-		
-		Location playerLoc = LocationCache.getCachedLocation();
+		SpawnAttemptBatch batch = new SpawnAttemptBatch(this, 16);
+		boolean[] eligible = null;
+		boolean[] outsideLimits = null;
 		
-		Player player;
-		while (checkPlayers-- > 0 && (player = playerQueue.poll()) != null)
+		SpawnZone zone;
+		while ((zone = zoneQueue.poll()) != null)
 		{
-			if (!player.isValid())
-				continue;
+			// Fetch the chunk snapshots for the zone
+			WorldSnapshot snapshot = zone.snapshot;
 			
-			// Check if the player is in creative mode
-			if (cfg.ignoreCreativePlayers && player.getGameMode() == GameMode.CREATIVE)
-				continue;
+			if (eligible == null || eligible.length < zone.members.length)
+			{
+				eligible = new boolean[zone.members.length];
+				outsideLimits = new boolean[zone.members.length];
+			}
 			
-			// Find the region the player is in
-			player.getLocation(playerLoc);
-			Region playerRegion = cfg.getRegion(playerLoc);
+			// Find which players in the zone can have mobs spawned around them
+			int eligibleCount = 0;
+			for (int i = 0; i < zone.members.length; ++i)
+			{
+				eligible[i] = isEligible(zone.members[i], snapshot);
+				
+				if (!eligible[i])
+					continue;
+				
+				// Check if the player already has too many mobs spawned around them
+				SpawnZone.Member member = zone.members[i];
+				outsideLimits[i] = member.region.maxPlayerMobs > 0 && spawnFinder.getMobCount(member.player, member.region.playerMobCooldown) >= member.region.maxPlayerMobs;
+				
+				// If we are outside of spawn limits skip the player
+				// Unless the region has mobs which can ignore the spawn limits
+				if (outsideLimits[i] && !member.region.ignoreMobLimits())
+					eligible[i] = false;
+				else
+					++eligibleCount;
+			}
 			
-			// Check if we can spawn in this region
-			if (playerRegion == null || playerRegion.spawnAttempts <= 0)
+			if (eligibleCount == 0)
 				continue;
 			
-			// Check if the player already has too many mobs spawned around them
-			boolean outsideSpawnLimits = playerRegion.maxPlayerMobs > 0 && spawnFinder.getMobCount(player, playerRegion.playerMobCooldown) >= playerRegion.maxPlayerMobs;
-
-			// If we are outside of spawn limits continue
-			// Unless the region has mobs which can ignore the spawn limits
-			if (outsideSpawnLimits && !playerRegion.ignoreMobLimits())
+			// Share the zones attempts between the eligible players
+			int member = 0;
+			for (int attempt = 0; attempt < zone.attempts; ++attempt)
+			{
+				while (!eligible[member])
+					member = (member + 1) % zone.members.length;
+				
+				SpawnZone.Member m = zone.members[member];
+				batch.add(new SpawnAttempt(this, m.player, snapshot, zone, m.maxRange, m.minRange, m.heightRange, outsideLimits[member]));
+				
+				member = (member + 1) % zone.members.length;
+			}
+		}
+		
+		// Run the async states of the new attempts right away
+		batch.run();
+	}
+	
+	/**
+	 * Checks if mobs can be spawned around the zone member
+	 */
+	private boolean isEligible(SpawnZone.Member member, WorldSnapshot snapshot)
+	{
+		Player player = member.player;
+		
+		if (!player.isValid())
+			return false;
+		
+		// Check if the player is in creative mode
+		if (cfg.ignoreCreativePlayers && player.getGameMode() == GameMode.CREATIVE)
+			return false;
+		
+		// If the player changed worlds after the snapshots were taken we can't spawn around them
+		return player.getWorld() == snapshot.world;
+	}
+	
+	/**
+	 * Runs the sync states of waiting attempts, oldest first</br>
+	 * Stops once SyncSpawnTimeBudget or MaxSyncSpawnsPerRun is used up, leaving
+	 * the rest of the attempts for the next run. Attempts which have waited
+	 * longer than SyncSpawnTimeout are dropped
+	 * 
+	 * @param deadline The time in nanoseconds the sync budget runs out
+	 */
+	private void runSyncAttempts(long deadline)
+	{
+		int pending = syncPending.get();
+		if (pending > maxSyncPending)
+			maxSyncPending = pending;
+		
+		if (pending == 0)
+		{
+			lastSyncNanos = 0L;
+			return;
+		}
+		
+		long start = System.nanoTime();
+		long staleTime = start - cfg.syncSpawnTimeoutNanos;
+		int processed = 0;
+		
+		SpawnAttempt attempt;
+		while ((attempt = syncQueue.peek()) != null)
+		{
+			// Leave the remaining attempts for the next run if we are out of time
+			if ((cfg.syncSpawnBudgetNanos > 0 && System.nanoTime() >= deadline)
+					|| (cfg.maxSyncSpawnsPerRun > 0 && processed >= cfg.maxSyncSpawnsPerRun))
+			{
+				++syncOverruns;
+				break;
+			}
+			
+			syncQueue.poll();
+			syncPending.decrementAndGet();
+			
+			// Drop the attempt if it has been waiting too long
+			if (cfg.syncSpawnTimeoutNanos > 0 && attempt.queuedAt - staleTime < 0)
+			{
+				attempt.cancel();
+				++syncDropped;
 				continue;
+			}
+			
+			// Run each sync state of the attempt
+			AttemptState state;
+			while ((state = attempt.getState()).sync)
+			{
+				long stateStart = System.nanoTime();
+				attempt.process();
+				recordStage(state, 1, System.nanoTime() - stateStart);
+			}
+			
+			if (state == AttemptState.FINISH)
+				attempt.releaseLocation();
+			else
+				addAttempt(attempt);
+			
+			++processed;
+		}
+		
+		lastSyncNanos = System.nanoTime() - start;
+	}
+	
+	/**
+	 * Splits attempts waiting for an async state into batches for the worker threads
+	 */
+	private void startAsyncBatches()
+	{
+		int pending = asyncPending.get();
+		if (pending == 0)
+			return;
+		
+		int batches = Math.max(Math.min(cfg.spawnFinderThreads, pending / MIN_ASYNC_BATCH), 1);
+		int batchSize = (pending + batches - 1) / batches;
+		
+		for (int i = 0; i < batches; ++i)
+		{
+			SpawnAttemptBatch batch = new SpawnAttemptBatch(this, batchSize);
 			
-			// Find the max spawn range for the world
-			MMWorld world = MMComponent.getLimiter().getWorld(playerLoc.getWorld());
-			int yHeight = world.getWorld().getEnvironment() == Environment.NORMAL ? playerLoc.getBlockY() : Short.MAX_VALUE;
+			SpawnAttempt attempt;
+			while (batch.size() < batchSize && (attempt = asyncQueue.poll()) != null)
+			{
+				asyncPending.decrementAndGet();
+				batch.add(attempt);
+			}
 			
-			int maxRange = Math.min(world != null ? world.getSearchDistance((short) yHeight) : Integer.MAX_VALUE, playerRegion.getMaxBlockRange(yHeight));
-			int minRange = Math.min(playerRegion.getMinBlockRange(yHeight), maxRange);
-			int heightRange = world != null ? world.getSearchHeight() : 24;
+			if (batch.size() == 0)
+				break;
 			
-			// Attempt 'X' spawns
-			for (int i = 0; i < playerRegion.spawnAttempts; ++i)
-				executor.execute(new SpawnAttempt(this, player, maxRange, minRange, heightRange, outsideSpawnLimits));
+			executor.execute(batch);
 		}
 	}
 	
-	protected void addTask(Runnable task, boolean sync)
+	/**
+	 * Queues an attempt to be run in the next batch for its current state
+	 */
+	protected void addAttempt(SpawnAttempt attempt)
 	{
-		if (sync)
-			syncWorkerQueue.add(task);
+		if (attempt.getState().sync)
+		{
+			attempt.queuedAt = System.nanoTime();
+			syncQueue.add(attempt);
+			syncPending.incrementAndGet();
+		}
 		else
-			executor.execute(task);
+		{
+			asyncQueue.add(attempt);
+			asyncPending.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Adds to the counters for the given state
+	 * 
+	 * @param state The state which was run
+	 * @param attempts The number of attempts which ran the state
+	 * @param nanos The time taken to run the state for every attempt
+	 */
+	protected void recordStage(AttemptState state, int attempts, long nanos)
+	{
+		stageCounts.addAndGet(state.ordinal(), attempts);
+		stageNanos.addAndGet(state.ordinal(), nanos);
+	}
+	
+	/**
+	 * @return The total number of attempts which have run the given state
+	 */
+	public long getStageCount(AttemptState state)
+	{
+		return stageCounts.get(state.ordinal());
+	}
+	
+	/**
+	 * @return The total time spent running the given state in nanoseconds
+	 */
+	public long getStageNanos(AttemptState state)
+	{
+		return stageNanos.get(state.ordinal());
+	}
+	
+	/**
+	 * @return The number of attempts waiting for a sync state
+	 */
+	public int getSyncPending()
+	{
+		return syncPending.get();
+	}
+	
+	/**
+	 * @return The most attempts which have been waiting for a sync state at once
+	 */
+	public int getMaxSyncPending()
+	{
+		return maxSyncPending;
+	}
+	
+	/**
+	 * @return The number of runs which used up their sync budget before running every attempt
+	 */
+	public long getSyncOverruns()
+	{
+		return syncOverruns;
+	}
+	
+	/**
+	 * @return The number of attempts dropped after waiting longer than SyncSpawnTimeout
+	 */
+	public long getSyncDropped()
+	{
+		return syncDropped;
+	}
+	
+	/**
+	 * @return The time the last run spent on sync states in nanoseconds
+	 */
+	public long getLastSyncNanos()
+	{
+		return lastSyncNanos;
+	}
+	
+	/**
+	 * @return The number of zones skipped because their snapshots could not be taken within the sync budget before the cycle ended
+	 */
+	public long getZonesDropped()
+	{
+		return zonesDropped;
+	}
+	
+	/**
+	 * @return The number of attempts waiting for an async state
+	 */
+	public int getAsyncPending()
+	{
+		return asyncPending.get();
+	}
+	
+	/**
+	 * Fetches the max distance from the player a mob can be spawned
+	 * 
+	 * @param playerRegion The region the player is in
+	 * @param playerLoc The players location
+	 */
+	protected int getMaxRange(Region playerRegion, Location playerLoc)
+	{
+		MMWorld world = MMComponent.getLimiter().getWorld(playerLoc.getWorld());
+		int yHeight = getRangeHeight(playerLoc);
+		
+		return Math.min(world != null ? world.getSearchDistance((short) yHeight) : Integer.MAX_VALUE, playerRegion.getMaxBlockRange(yHeight));
+	}
+	
+	/**
+	 * Fetches the height used to pick between underground and surface ranges
+	 */
+	private int getRangeHeight(Location playerLoc)
+	{
+		return playerLoc.getWorld().getEnvironment() == Environment.NORMAL ? playerLoc.getBlockY() : Short.MAX_VALUE;
+	}
+	
+	/**
+	 * Stops the worker threads and drops their cached objects
+	 */
+	public void shutdown()
+	{
+		executor.shutdownNow();
+		threadCache.clear();
+		
+		// Drop any attempts which were waiting
+		zoneQueue.clear();
+		syncQueue.clear();
+		asyncQueue.clear();
+		syncPending.set(0);
+		asyncPending.set(0);
 	}
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.spawner.tasks.spawnfinder;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.World.Environment;
+
+import com.forgenz.mobmanager.common.util.LongObjectMap;
+
+/**
+ * Takes the chunk snapshots spawn attempts use to check spawn locations</br>
+ * Snapshots are taken for one spawn zone at a time, right before the zone is
+ * handed to the worker threads, so the work is spread across the spawn cycle
+ * along with the zones (See {@link SpawnAttemptExecutor})
+ * <p>
+ * Snapshots which were taken recently are reused rather than taken again.
+ * The cache itself is only used by the main thread, the workers only see
+ * the {@link WorldSnapshot} created for each zone which is never modified
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class SpawnChunkCache
+{
+	/** Extra blocks around each player which are included incase they move during the cycle */
+	private static final int RANGE_MARGIN = 16;
+	
+	private final HashMap<World, LongObjectMap<TakenSnapshot>> worlds = new HashMap<World, LongObjectMap<TakenSnapshot>>();
+	
+	/** Time in nanoseconds a snapshot can be reused for */
+	private final long maxAgeNanos;
+	
+	// Statistics, only modified by the main thread
+	private volatile long chunksTaken, chunksReused;
+	
+	/**
+	 * @param maxAgeTicks The number of ticks a snapshot can be reused for
+	 */
+	public SpawnChunkCache(int maxAgeTicks)
+	{
+		this.maxAgeNanos = maxAgeTicks * 50000000L;
+	}
+	
+	/**
+	 * Fetches snapshots of each loaded chunk mobs could be spawned in around
+	 * the members of the zone</br>
+	 * Snapshots taken within the last spawn cycle are reused
+	 * <p>
+	 * Must be called from the main thread
+	 * 
+	 * @param zone The zone to take the snapshots for
+	 * @return The snapshots for the zone
+	 */
+	public WorldSnapshot snapshotZone(SpawnZone zone)
+	{
+		World world = zone.world;
+		LongObjectMap<TakenSnapshot> taken = worlds.get(world);
+		
+		if (taken == null)
+			worlds.put(world, taken = new LongObjectMap<TakenSnapshot>());
+		
+		WorldSnapshot snapshot = new WorldSnapshot(world);
+		long now = System.nanoTime();
+		snapshot.takenAt = now;
+		
+		for (SpawnZone.Member member : zone.members)
+		{
+			int range = member.maxRange + RANGE_MARGIN;
+			int minX = (member.x - range) >> 4, maxX = (member.x + range) >> 4;
+			int minZ = (member.z - range) >> 4, maxZ = (member.z + range) >> 4;
+			
+			for (int x = minX; x <= maxX; ++x)
+			{
+				for (int z = minZ; z <= maxZ; ++z)
+				{
+					long key = LongObjectMap.key(x, z);
+					
+					// Only use chunks which are already loaded
+					if (snapshot.chunks.containsKey(key) || !world.isChunkLoaded(x, z))
+						continue;
+					
+					TakenSnapshot chunk = taken.get(key);
+					
+					if (chunk != null && now - chunk.takenAt < maxAgeNanos)
+					{
+						++chunksReused;
+					}
+					else
+					{
+						chunk = new TakenSnapshot(world.getChunkAt(x, z).getChunkSnapshot(false, true, false), now);
+						taken.put(key, chunk);
+						++chunksTaken;
+					}
+					
+					snapshot.chunks.put(key, chunk.snapshot);
+					
+					if (chunk.takenAt - snapshot.takenAt < 0L)
+						snapshot.takenAt = chunk.takenAt;
+				}
+			}
+		}
+		
+		return snapshot;
+	}
+	
+	/**
+	 * Removes snapshots which are too old to be reused</br>
+	 * Must be called from the main thread
+	 */
+	public void prune()
+	{
+		long now = System.nanoTime();
+		
+		Iterator<LongObjectMap<TakenSnapshot>> it = worlds.values().iterator();
+		while (it.hasNext())
+		{
+			LongObjectMap<TakenSnapshot> taken = it.next();
+			
+			for (long key : taken.keys())
+			{
+				if (now - taken.get(key).takenAt >= maxAgeNanos)
+					taken.remove(key);
+			}
+			
+			// Forget worlds without snapshots so unloaded worlds are not kept around
+			if (taken.isEmpty())
+				it.remove();
+		}
+	}
+	
+	/**
+	 * @return The number of chunk snapshots which have been taken
+	 */
+	public long getChunksTaken()
+	{
+		return chunksTaken;
+	}
+	
+	/**
+	 * @return The number of times a recent chunk snapshot was reused instead of taking a new one
+	 */
+	public long getChunksReused()
+	{
+		return chunksReused;
+	}
+	
+	/**
+	 * A chunk snapshot and the time it was taken
+	 */
+	private static class TakenSnapshot
+	{
+		final ChunkSnapshot snapshot;
+		final long takenAt;
+		
+		TakenSnapshot(ChunkSnapshot snapshot, long takenAt)
+		{
+			this.snapshot = snapshot;
+			this.takenAt = takenAt;
+		}
+	}
+	
+	/**
+	 * Chunk snapshots for a single zone along with the world state
+	 * required to check spawn requirements
+	 */
+	public static class WorldSnapshot
+	{
+		public final World world;
+		public final LongObjectMap<ChunkSnapshot> chunks = new LongObjectMap<ChunkSnapshot>();
+		/** {@link System#nanoTime()} when the oldest of the chunk snapshots was taken */
+		public long takenAt;
+		public final int time;
+		public final Environment environment;
+		/** Amount the sky light is reduced by due to the time of day and weather */
+		public final int skyDarkness;
+		
+		private WorldSnapshot(World world)
+		{
+			this.world = world;
+			this.time = (int) world.getTime();
+			this.environment = world.getEnvironment();
+			this.skyDarkness = environment == Environment.NORMAL ? calculateSkyDarkness(world.getTime(), world.hasStorm(), world.isThundering()) : 0;
+		}
+	}
+	
+	/**
+	 * Calculates how much sky light is reduced by in an overworld</br>
+	 * Matches the calculation minecraft uses to darken the sky light
+	 */
+	private static int calculateSkyDarkness(long time, boolean storm, boolean thundering)
+	{
+		// Calculate the angle of the sun
+		float angle = (time % 24000L) / 24000.0F - 0.25F;
+		if (angle < 0.0F)
+			angle += 1.0F;
+		if (angle > 1.0F)
+			angle -= 1.0F;
+		angle += ((1.0F - (float) ((Math.cos(angle * Math.PI) + 1.0D) / 2.0D)) - angle) / 3.0F;
+		
+		// Calculate the brightness of the sky
+		float brightness = 1.0F - ((float) Math.cos(angle * Math.PI * 2.0D) * 2.0F + 0.5F);
+		if (brightness < 0.0F)
+			brightness = 0.0F;
+		if (brightness > 1.0F)
+			brightness = 1.0F;
+		brightness = 1.0F - brightness;
+		
+		// Rain and thunder both darken the sky
+		if (storm)
+			brightness *= 1.0F - 5.0F / 16.0F;
+		if (thundering)
+			brightness *= 1.0F - 5.0F / 16.0F;
+		
+		return (int) ((1.0F - brightness) * 11.0F);
+	}
+}
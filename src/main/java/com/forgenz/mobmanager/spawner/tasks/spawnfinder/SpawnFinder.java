@@ -28,22 +28,26 @@
 
 package com.forgenz.mobmanager.spawner.tasks.spawnfinder;
 
-import java.util.HashMap;
-import java.util.Queue;
+import java.util.ArrayList;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.bukkit.Bukkit;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 
 import com.forgenz.mobmanager.MMComponent;
 import com.forgenz.mobmanager.P;
+import com.forgenz.mobmanager.common.util.ColumnHeightCache;
+import com.forgenz.mobmanager.common.util.LocationCache;
 import com.forgenz.mobmanager.spawner.config.Mob;
 import com.forgenz.mobmanager.spawner.config.Region;
 import com.forgenz.mobmanager.spawner.config.SpawnerConfig;
 import com.forgenz.mobmanager.spawner.util.MobReference;
 import com.forgenz.mobmanager.spawner.util.PlayerMobCounter;
+import com.forgenz.mobmanager.spawner.util.PlayerSpawnState;
 
 /**
  * Initiates the finding of spawns for mobs
@@ -52,24 +56,30 @@ public class SpawnFinder extends BukkitRunnable
 {
 	private final SpawnerConfig cfg;
 	
-	private final Queue<Player> playerQueue = new ConcurrentLinkedQueue<Player>();
 	private int ticksLeft;
 	
-	private final SpawnAttemptExecutor spawnAttemptExecutor = new SpawnAttemptExecutor(this, playerQueue);
+	private final SpawnChunkCache chunkCache;
+	private final ColumnHeightCache columnCache;
 	
-	private final ConcurrentHashMap<String, PlayerMobCounter> playerMobs; 
-	private final ConcurrentHashMap<String, HashMap<String, PlayerMobCounter>> groupedPlayerMobs;
+	private final SpawnAttemptExecutor spawnAttemptExecutor = new SpawnAttemptExecutor(this);
+	
+	private final ConcurrentHashMap<UUID, PlayerSpawnState> playerStates;
 	
 	public SpawnFinder()
 	{
 		// Fetch spawner config
 		cfg = MMComponent.getSpawner().getConfig();
 		
-		playerMobs = new ConcurrentHashMap<String, PlayerMobCounter>(cfg.spawnFinderThreads + 1);
-		groupedPlayerMobs = new ConcurrentHashMap<String, HashMap<String, PlayerMobCounter>>(cfg.spawnFinderThreads + 1);
+		playerStates = new ConcurrentHashMap<UUID, PlayerSpawnState>(16, 0.75F, cfg.spawnFinderThreads + 1);
 		
 		this.ticksLeft = cfg.ticksPerSpawn;
 		
+		// The finder runs every 2 ticks, snapshots can be reused for one spawn cycle
+		chunkCache = new SpawnChunkCache(cfg.ticksPerSpawn * 2);
+		
+		// Snapshots are reused for a cycle, block changes are remembered for a few cycles so none are forgotten while an older snapshot is in use
+		columnCache = cfg.columnCacheSize > 0 ? new ColumnHeightCache(cfg.columnCacheSize, cfg.ticksPerSpawn * 8) : null;
+		
 		runTaskTimer(P.p(), 1L, 2L);
 	}
 	
@@ -79,8 +89,31 @@ public class SpawnFinder extends BukkitRunnable
 		// Initialise the task
 		if (ticksLeft-- == cfg.ticksPerSpawn)
 		{
+			// Snapshots older than a cycle are not reused
+			chunkCache.prune();
+			
+			Location playerLoc = LocationCache.getCachedLocation();
+			ArrayList<SpawnZone.Member> members = new ArrayList<SpawnZone.Member>();
+			
 			for (Player player : Bukkit.getOnlinePlayers())
-				playerQueue.add(player);
+			{
+				if (cfg.ignoreCreativePlayers && player.getGameMode() == GameMode.CREATIVE)
+					continue;
+				
+				player.getLocation(playerLoc);
+				Region playerRegion = cfg.getRegion(playerLoc);
+				
+				if (playerRegion == null || playerRegion.spawnAttempts <= 0)
+					continue;
+				
+				SpawnZone.Member member = spawnAttemptExecutor.createMember(player, playerRegion, playerLoc);
+				members.add(member);
+			}
+			
+			LocationCache.release(playerLoc);
+			
+			// Group players with overlapping spawn areas and spread their attempts over the cycle
+			spawnAttemptExecutor.startCycle(SpawnZone.createZones(members), cfg.ticksPerSpawn - 1);
 			return;
 		}
 		
@@ -89,11 +122,36 @@ public class SpawnFinder extends BukkitRunnable
 		// Reset everything
 		if (ticksLeft == 0)
 		{
-			playerQueue.clear();
 			ticksLeft = cfg.ticksPerSpawn;
 		}
 	}
 	
+	/**
+	 * Fetches the cache which takes the chunk snapshots for spawn zones
+	 */
+	public SpawnChunkCache getChunkCache()
+	{
+		return chunkCache;
+	}
+	
+	/**
+	 * Fetches the executor which runs the spawn attempts
+	 */
+	public SpawnAttemptExecutor getSpawnAttemptExecutor()
+	{
+		return spawnAttemptExecutor;
+	}
+	
+	/**
+	 * Fetches the cache of standing Y levels used to find spawn locations
+	 * 
+	 * @return The cache, or null if ColumnCacheSize is 0
+	 */
+	public ColumnHeightCache getColumnCache()
+	{
+		return columnCache;
+	}
+	
 	/**
 	 * Fetches the number of mobs which the player has spawned
 	 * 
@@ -104,31 +162,40 @@ public class SpawnFinder extends BukkitRunnable
 	 */
 	public int getMobCount(Player player, int mobLimitTimeout)
 	{
-		PlayerMobCounter limiter = playerMobs.get(player.getName());
+		PlayerSpawnState state = playerStates.get(player.getUniqueId());
 		
-		return limiter != null ? limiter.getMobCount() : 0;
+		return state != null ? state.getMobs().getMobCount() : 0;
 	}
 	
 	public boolean withinGroupedLimit(Player player, Region region, Mob mob)
 	{
-		if (mob.playerLimitGroup.length() <= 0)
+		if (mob.playerLimitGroupId < 0)
 			return true;
 		
-		int limit = region.getPlayerGroupMobLimit(mob.playerLimitGroup);
+		int limit = region.getPlayerGroupMobLimit(mob.playerLimitGroupId);
 		
 		if (limit <= 0)
 			return true;
 		
-		HashMap<String, PlayerMobCounter> playerLimiters = groupedPlayerMobs.get(player.getName());
+		PlayerSpawnState state = playerStates.get(player.getUniqueId());
 		
-		if (playerLimiters == null)
+		if (state == null)
 			return true;
 		
-		synchronized (playerLimiters)
-		{
-			PlayerMobCounter limiter = playerLimiters.get(mob.playerLimitGroup);
-			return limiter != null ? limiter.withinLimit(limit, region.playerMobCooldown) : true;
-		}
+		PlayerMobCounter limiter = state.getGroup(mob.playerLimitGroupId);
+		return limiter != null ? limiter.withinLimit(limit, region.playerMobCooldown) : true;
+	}
+	
+	/**
+	 * Stops the spawn finder and its worker threads
+	 */
+	public void shutdown()
+	{
+		cancel();
+		spawnAttemptExecutor.shutdown();
+		
+		if (columnCache != null)
+			columnCache.clear();
 	}
 	
 	/**
@@ -138,57 +205,41 @@ public class SpawnFinder extends BukkitRunnable
 	 */
 	public void removeMobs(Player player)
 	{
-		PlayerMobCounter limiter = playerMobs.remove(player.getName());
+		PlayerSpawnState state = playerStates.remove(player.getUniqueId());
 		
-		if (limiter != null && cfg.removePlayersMobOnDisconnect)
-			limiter.killAll();
-		
-		groupedPlayerMobs.remove(player.getName());
+		if (state != null && cfg.removePlayersMobOnDisconnect)
+			state.getMobs().killAll();
 	}
 
 	/**
 	 * Adds the placeholder to spawn limits to prepare for spawning a mob
 	 * 
 	 * @param player The player involved
+	 * @param region The region the mob is spawning in
 	 * @param mob The mob config used to create the entity
 	 * @param mobRef The entity to add
 	 * @return True if the mob is allowed to spawn
 	 */
-	public boolean addSpawnedMob(Player player, Mob mob, MobReference mobRef)
+	public boolean addSpawnedMob(Player player, Region region, Mob mob, MobReference mobRef)
 	{
 		if (!mobRef.isValid())
 			return false;
 		
-		// Fetch the players mob list
-		PlayerMobCounter limiter = playerMobs.get(player.getName());
+		// Fetch the players spawn state
+		PlayerSpawnState state = playerStates.get(player.getUniqueId());
 			
-		// If the limiter doesn't exist create it
-		if (limiter == null)
-			playerMobs.put(player.getName(), limiter = new PlayerMobCounter(player));
+		// If the state doesn't exist create it
+		if (state == null)
+			playerStates.put(player.getUniqueId(), state = new PlayerSpawnState(player));
 		
-		// Track the entity
-		if (!limiter.add(mobRef))
+		// Track the entity (MaxPlayerMobs only counts mobs when it is enabled)
+		if (cfg.enablePlayerMobLimits && !state.getMobs().add(mobRef, region.playerMobCooldown))
 			return false;
 		
 		// Check for grouped limiters
-		if (mob.playerLimitGroup.length() > 0)
-		{
-			HashMap<String, PlayerMobCounter> playerLimiters = groupedPlayerMobs.get(player.getName());
-			
-			if (playerLimiters == null)
-				groupedPlayerMobs.put(player.getName(), playerLimiters = new HashMap<String, PlayerMobCounter>());
-			
-			synchronized (playerLimiters)
-			{
-				PlayerMobCounter groupedLimiter = playerLimiters.get(mob.playerLimitGroup);
-				
-				if (groupedLimiter == null)
-					playerLimiters.put(mob.playerLimitGroup, groupedLimiter = new PlayerMobCounter(player));
-				
-				if (!groupedLimiter.add(mobRef))
-					return false;
-			}
-		}
+		if (mob.playerLimitGroupId >= 0 && !state.getOrCreateGroup(mob.playerLimitGroupId).add(mobRef, region.playerMobCooldown))
+			return false;
+		
 		return true;
 	}
 }
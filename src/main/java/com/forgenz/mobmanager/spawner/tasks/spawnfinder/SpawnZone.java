@@ -0,0 +1,243 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.spawner.tasks.spawnfinder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import com.forgenz.mobmanager.common.util.RandomLocationGen.LocationFilter;
+import com.forgenz.mobmanager.common.util.RandomUtil;
+import com.forgenz.mobmanager.spawner.config.Region;
+
+/**
+ * A group of players whose spawn areas overlap</br>
+ * Spawn attempts are shared between the players in the zone, and the number
+ * of attempts is scaled down by how much their spawn areas overlap so crowded
+ * areas don't get more attempts than the area they actually cover
+ * <p>
+ * Zones are created on the main thread at the start of each spawn cycle and
+ * are never modified after they are handed to the worker threads
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class SpawnZone implements LocationFilter
+{
+	/** Max number of points sampled when estimating the area covered by a zone */
+	private static final int AREA_SAMPLES = 1024;
+	
+	public final World world;
+	public final Member[] members;
+	/** The number of spawn attempts for the whole zone */
+	public final int attempts;
+	/** Chunk snapshots for the zone, taken right before the zone is handed to the worker threads */
+	SpawnChunkCache.WorldSnapshot snapshot;
+	
+	private SpawnZone(World world, Member[] members)
+	{
+		this.world = world;
+		this.members = members;
+		
+		int totalAttempts = 0;
+		for (Member member : members)
+			totalAttempts += member.region.spawnAttempts;
+		
+		// Scale the attempts by the fraction of the players areas which is not overlapped
+		int attempts = members.length == 1 ? totalAttempts : (int) Math.round(totalAttempts * getUniqueAreaFraction());
+		this.attempts = totalAttempts > 0 ? Math.max(attempts, 1) : 0;
+	}
+	
+	/**
+	 * Checks a generated location against the other players in the zone</br>
+	 * Locations too close to any player are rejected. Locations covered by
+	 * several players spawn areas are only accepted with a chance of one over
+	 * the number of players covering it, so overlapped areas are not favoured
+	 */
+	@Override
+	public boolean accept(int x, int z)
+	{
+		if (members.length == 1)
+			return true;
+		
+		int covering = 0;
+		for (Member member : members)
+		{
+			long dX = x - member.x, dZ = z - member.z;
+			long distanceSquared = dX * dX + dZ * dZ;
+			
+			if (distanceSquared < (long) member.minRange * member.minRange)
+				return false;
+			if (distanceSquared <= (long) member.maxRange * member.maxRange)
+				++covering;
+		}
+		
+		return covering <= 1 || RandomUtil.i().nextInt(covering) == 0;
+	}
+	
+	/**
+	 * Estimates the fraction of the members spawn areas which are not
+	 * overlapped by another members spawn area
+	 */
+	private double getUniqueAreaFraction()
+	{
+		long minX = Long.MAX_VALUE, minZ = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxZ = Long.MIN_VALUE;
+		double totalArea = 0.0;
+		
+		for (Member member : members)
+		{
+			minX = Math.min(minX, member.x - member.maxRange);
+			minZ = Math.min(minZ, member.z - member.maxRange);
+			maxX = Math.max(maxX, member.x + member.maxRange);
+			maxZ = Math.max(maxZ, member.z + member.maxRange);
+			
+			totalArea += Math.PI * ((double) member.maxRange * member.maxRange - (double) member.minRange * member.minRange);
+		}
+		
+		if (totalArea <= 0.0)
+			return 1.0;
+		
+		// Sample the bounding box on a grid and count the points inside any members area
+		long step = Math.max(1L, (long) Math.ceil(Math.sqrt((double) (maxX - minX) * (maxZ - minZ) / AREA_SAMPLES)));
+		long covered = 0;
+		
+		for (long x = minX + step / 2; x <= maxX; x += step)
+		{
+			for (long z = minZ + step / 2; z <= maxZ; z += step)
+			{
+				for (Member member : members)
+				{
+					long dX = x - member.x, dZ = z - member.z;
+					long distanceSquared = dX * dX + dZ * dZ;
+					
+					if (distanceSquared <= (long) member.maxRange * member.maxRange && distanceSquared >= (long) member.minRange * member.minRange)
+					{
+						++covered;
+						break;
+					}
+				}
+			}
+		}
+		
+		return Math.min(1.0, covered * step * step / totalArea);
+	}
+	
+	/**
+	 * Groups players into zones where their spawn areas overlap</br>
+	 * Players are in the same zone if they are in the same world and
+	 * their max spawn ranges overlap, directly or through other players
+	 * 
+	 * @param members Every player to spawn mobs around this cycle
+	 * 
+	 * @return The zones
+	 */
+	public static List<SpawnZone> createZones(List<Member> members)
+	{
+		int count = members.size();
+		
+		// Union-find over the members
+		int[] parent = new int[count];
+		for (int i = 0; i < count; ++i)
+			parent[i] = i;
+		
+		for (int i = 0; i < count; ++i)
+		{
+			Member a = members.get(i);
+			for (int j = i + 1; j < count; ++j)
+			{
+				Member b = members.get(j);
+				if (a.world != b.world)
+					continue;
+				
+				long dX = a.x - b.x, dZ = a.z - b.z;
+				long range = (long) a.maxRange + b.maxRange;
+				if (dX * dX + dZ * dZ < range * range)
+					parent[find(parent, i)] = find(parent, j);
+			}
+		}
+		
+		// Collect the members of each zone
+		ArrayList<SpawnZone> zones = new ArrayList<SpawnZone>();
+		int[] zoneSizes = new int[count];
+		for (int i = 0; i < count; ++i)
+			++zoneSizes[find(parent, i)];
+		
+		for (int root = 0; root < count; ++root)
+		{
+			if (zoneSizes[root] == 0)
+				continue;
+			
+			Member[] zoneMembers = new Member[zoneSizes[root]];
+			int index = 0;
+			for (int i = 0; i < count; ++i)
+			{
+				if (find(parent, i) == root)
+					zoneMembers[index++] = members.get(i);
+			}
+			
+			SpawnZone zone = new SpawnZone(zoneMembers[0].world, zoneMembers);
+			if (zone.attempts > 0)
+				zones.add(zone);
+		}
+		
+		return zones;
+	}
+	
+	private static int find(int[] parent, int i)
+	{
+		while (parent[i] != i)
+			i = parent[i] = parent[parent[i]];
+		return i;
+	}
+	
+	/**
+	 * A player in a spawn zone and their spawn settings at the start of the cycle
+	 */
+	public static class Member
+	{
+		public final Player player;
+		public final Region region;
+		public final World world;
+		public final int x, z;
+		public final int maxRange, minRange, heightRange;
+		
+		public Member(Player player, Region region, World world, int x, int z, int maxRange, int minRange, int heightRange)
+		{
+			this.player = player;
+			this.region = region;
+			this.world = world;
+			this.x = x;
+			this.z = z;
+			this.maxRange = maxRange;
+			this.minRange = minRange;
+			this.heightRange = heightRange;
+		}
+	}
+}
@@ -25,20 +25,26 @@
  * authors and contributors and should not be interpreted as representing official policies,
  * either expressed or implied, of anybody else.
  */
-
 package com.forgenz.mobmanager.spawner.util;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bukkit.entity.LivingEntity;
 
+/**
+ * Counts the mobs which count towards a limit
+ * <p>
+ * The count is kept in an atomic integer so limit checks never lock or walk
+ * the tracked mobs.</br>
+ * The mobs themselves are tracked by {@link MobRegistry}, which removes them
+ * from the count when they die or their cooldown expires (See {@link MobCounterWheel})
+ */
 public class MobCounter
 {
-	private ArrayList<MobReference> aliveMobs;
+	private final AtomicInteger count = new AtomicInteger();
 	
-	protected  int maxAliveMobs;
-	protected int mobCooldown;
+	protected volatile int maxAliveMobs;
+	protected volatile int mobCooldown;
 	private final boolean enforceAllRemovalConditions;
 	
 	public MobCounter(int maxAliveMobs, int mobCooldown, boolean enforceAllRemovalConditions)
@@ -57,94 +63,91 @@ public class MobCounter
 		return getMobCount() < maxAliveMobs;
 	}
 	
-	public synchronized int getMobCount()
+	public int getMobCount()
 	{
-		// If there are no alive mobs
-		if (aliveMobs == null)
-			return 0;
-		
-		// Iterate through each one and remove old mobs
-		Iterator<MobReference> it = aliveMobs.iterator();
-		while (it.hasNext())
-		{
-			MobReference r = it.next();
-			
-			// Wait a little while for the reference to the mob to be set
-			if (!r.isSet())
-				continue;
-			
-			// If the reference is invalid ignore it
-			if (!r.isValid())
-			{
-				it.remove();
-				continue;
-			}
-			
-			LivingEntity entity = r.getEntity();
-			
-			// Check if the mob is dead
-			if (entity == null)
-			{
-				// Check if we need to wait for the cooldown as well
-				if (enforceAllRemovalConditions && !r.cooldownExpired(mobCooldown))
-					continue;
-				// Remove this mob from the limit
-				it.remove();
-			}
-			// If we don't need both conditions and the cooldown has expired remove the mob from the limit
-			else if (!enforceAllRemovalConditions && r.cooldownExpired(mobCooldown))
-				it.remove();
-			else if (remove(entity))
-				it.remove();
-		}
-		
-		return aliveMobs.size();
+		return count.get();
 	}
 	
+	/**
+	 * Checks if a living mob should stop counting towards this limit
+	 */
 	protected boolean remove(LivingEntity entity)
 	{
 		return false;
 	}
+	
+	/**
+	 * @return True if mobs must be dead and have their cooldown expired before they are removed
+	 */
+	boolean enforcesAllRemovalConditions()
+	{
+		return enforceAllRemovalConditions;
+	}
 
 	/**
 	 * Adds the entity to this mobs MaxAlive limit
 	 * 
 	 * @param e The entity to add
 	 */
-	public synchronized boolean add(MobReference mobRef)
+	public boolean add(MobReference mobRef)
 	{
 		// If maxAlive is disabled do nothing
 		if (maxAliveMobs <= 0)
 			return true;
 		
-		// If we are outside of our limit return false
-		if (!withinLimit())
+		return add(mobRef, maxAliveMobs, mobCooldown);
+	}
+	
+	/**
+	 * Adds the entity to the count
+	 * 
+	 * @param mobRef The entity to add
+	 * @param limit The limit to check against, or 0 to always add the entity
+	 * @param cooldown The time in milliseconds before the entity is removed from the count
+	 * 
+	 * @return True if the entity was added
+	 */
+	protected boolean add(MobReference mobRef, int limit, int cooldown)
+	{
+		// Reserve a place in the count
+		if (limit > 0)
+		{
+			int current;
+			do
+			{
+				current = count.get();
+				
+				// If we are outside of our limit return false
+				if (current >= limit)
+				{
+					mobRef.invalidate();
+					return false;
+				}
+			}
+			while (!count.compareAndSet(current, current + 1));
+		}
+		else
 		{
-			mobRef.invalidate();
-			return false;
+			count.incrementAndGet();
 		}
 		
-		// If the aliveMobs list doesn't exist, then create it
-		if (aliveMobs == null)
-			aliveMobs = new ArrayList<MobReference>();
-		
-		// Add the mob to the list
-		aliveMobs.add(mobRef);
+		mobRef.addCounter(this, cooldown);
 		return true;
 	}
 	
-	public synchronized void killAll()
+	/**
+	 * Removes a mob from the count
+	 */
+	void release()
 	{
-		if (aliveMobs == null)
-			return;
-		
-		for (MobReference r : aliveMobs)
-		{
-			LivingEntity entity = r.getEntity();
-			
-			if (entity != null && entity.getRemoveWhenFarAway())
-				entity.remove();
-		}
-		aliveMobs.clear();
+		count.decrementAndGet();
+	}
+	
+	/**
+	 * Removes every mob counting towards this limit from the world
+	 */
+	public void killAll()
+	{
+		MobRegistry.killAll(this);
 	}
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.spawner.util;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.bukkit.scheduler.BukkitRunnable;
+
+import com.forgenz.mobmanager.P;
+
+/**
+ * Hashed timing wheel which removes mobs from their counters once their
+ * cooldown expires</br>
+ * Also prunes dead and invalid mobs from the {@link MobRegistry} in the background
+ * <p>
+ * Each slot holds the mobs whose next cooldown expires in that slots tick. Mobs
+ * with cooldowns longer than a full turn of the wheel stay in their slot until
+ * the turn they expire in.</br>
+ * The wheel is only advanced from the main thread
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class MobCounterWheel extends BukkitRunnable
+{
+	/** Number of slots in the wheel, must be a power of 2 */
+	private static final int SLOTS = 512;
+	/** The time covered by each slot in milliseconds */
+	private static final long TICK_MILLIS = 250L;
+	/** Server ticks between each run of the wheel */
+	private static final long PERIOD = 5L;
+	/** Runs of the wheel between each prune of the registry */
+	private static final int PRUNE_INTERVAL = 4;
+	
+	private static final ConcurrentLinkedQueue<MobReference>[] slots = createSlots();
+	
+	private static MobCounterWheel task;
+	private static long currentTick = System.currentTimeMillis() / TICK_MILLIS;
+	
+	private int runsUntilPrune = PRUNE_INTERVAL;
+	
+	private MobCounterWheel()
+	{
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static ConcurrentLinkedQueue<MobReference>[] createSlots()
+	{
+		ConcurrentLinkedQueue<MobReference>[] slots = new ConcurrentLinkedQueue[SLOTS];
+		for (int i = 0; i < SLOTS; ++i)
+			slots[i] = new ConcurrentLinkedQueue<MobReference>();
+		return slots;
+	}
+	
+	/**
+	 * Starts running the wheel
+	 */
+	public static void start()
+	{
+		if (task != null)
+			return;
+		
+		currentTick = System.currentTimeMillis() / TICK_MILLIS;
+		task = new MobCounterWheel();
+		task.runTaskTimer(P.p(), PERIOD, PERIOD);
+	}
+	
+	/**
+	 * Stops running the wheel and forgets every tracked mob
+	 */
+	public static void stop()
+	{
+		if (task == null)
+			return;
+		
+		task.cancel();
+		task = null;
+		
+		for (ConcurrentLinkedQueue<MobReference> slot : slots)
+			slot.clear();
+		MobRegistry.clear();
+	}
+	
+	/**
+	 * Adds a newly spawned mob to the wheel
+	 */
+	static void track(MobReference mobRef)
+	{
+		long next = mobRef.getNextExpiry();
+		
+		// Mobs without a cooldown are only removed when they die
+		if (next == Long.MAX_VALUE)
+			return;
+		
+		mobRef.wheelTime = next;
+		slots[(int) (next / TICK_MILLIS & (SLOTS - 1))].add(mobRef);
+	}
+	
+	@Override
+	public void run()
+	{
+		long now = System.currentTimeMillis();
+		long nowTick = now / TICK_MILLIS;
+		
+		// If we fell more than a full turn behind every slot needs checking once
+		if (nowTick - currentTick > SLOTS)
+			currentTick = nowTick - SLOTS;
+		
+		ArrayList<MobReference> notExpired = new ArrayList<MobReference>();
+		ArrayList<MobReference> moved = new ArrayList<MobReference>();
+		for (; currentTick <= nowTick; ++currentTick)
+		{
+			ConcurrentLinkedQueue<MobReference> slot = slots[(int) (currentTick & (SLOTS - 1))];
+			
+			MobReference mobRef;
+			while ((mobRef = slot.poll()) != null)
+			{
+				if (mobRef.isReleased())
+					continue;
+				
+				// Mobs due in a later turn of the wheel go back into the slot
+				if (mobRef.wheelTime > now)
+				{
+					notExpired.add(mobRef);
+					continue;
+				}
+				
+				// Move the mob to the slot of its next cooldown
+				mobRef.wheelTime = Long.MAX_VALUE;
+				if (mobRef.expire(now) != Long.MAX_VALUE)
+					moved.add(mobRef);
+			}
+			
+			if (!notExpired.isEmpty())
+			{
+				slot.addAll(notExpired);
+				notExpired.clear();
+			}
+		}
+		
+		// Leave the current tick to be checked again next run
+		currentTick = nowTick;
+		
+		for (MobReference mobRef : moved)
+			track(mobRef);
+		
+		if (--runsUntilPrune > 0)
+			return;
+		runsUntilPrune = PRUNE_INTERVAL;
+		
+		// Remove dead mobs from their counters
+		MobRegistry.prune();
+	}
+}
@@ -1,22 +1,35 @@
 package com.forgenz.mobmanager.spawner.util;
 
-import java.lang.ref.WeakReference;
+import java.util.Arrays;
 
 import org.bukkit.entity.LivingEntity;
 
 /**
- * Keeps a reference to the a mob and its spawn time.
+ * Keeps a reference to the a mob, its spawn time and every limit it counts towards.
+ * <p>
+ * Once the mob is spawned it is tracked by {@link MobRegistry} using its entity id,
+ * so its death removes it from every counter at once.</br>
+ * Should only be used from the main thread
  */
 public class MobReference
 {
-	private boolean refSet;
 	private boolean valid;
-	private WeakReference<LivingEntity> e;
+	private LivingEntity e;
+	private boolean dead;
 	private final long spawnTime;
 	
+	// The counters this mob counts towards
+	private MobCounter[] counters = new MobCounter[4];
+	private long[] expiresAt = new long[4];
+	private int counterCount;
+	// Bitmasks of the counters the mob has been removed from and whose cooldowns have expired
+	private int released, expired;
+	
+	/** The time the mob is due in the cooldown wheel (System.currentTimeMillis) */
+	long wheelTime = Long.MAX_VALUE;
+	
 	public MobReference()
 	{
-		refSet = false;
 		valid = true;
 		spawnTime = System.currentTimeMillis();
 	}
@@ -28,42 +41,41 @@ public class MobReference
 	 */
 	public LivingEntity getEntity()
 	{
-		// If the weak reference is null the entity is invalid
-		if (e == null)
-			return null;
-		
-		// Fetch the entity
-		LivingEntity entity = e.get();
-		// If the entity is null it has been removed by GB
 		// If the entity is invalid it is gone
-		if (entity == null || !entity.isValid())
-		{
-			// Remove the weak reference and return null
-			e = null;
+		if (e == null || !e.isValid())
 			return null;
-		}
 		
-		// Fetch the entity and return
-		return e.get();
+		return e;
 	}
 	
 	/**
-	 * Checks if the spawn cooldown has expired
-	 * 
-	 * @return Returns true if the spawn cooldown has expired
+	 * @return The time the reference was created (System.currentTimeMillis)
 	 */
-	public boolean cooldownExpired(int mobCooldown)
+	public long getSpawnTime()
 	{
-		return mobCooldown > 0 && (System.currentTimeMillis() - spawnTime) > mobCooldown;
+		return spawnTime;
 	}
 	
+	/**
+	 * Sets the entity which was spawned</br>
+	 * The mob starts being tracked by the registry and cooldown wheel.
+	 * If the entity is null the mob is removed from every counter
+	 */
 	public void setReference(LivingEntity entity)
 	{
-		if (entity != null)
-			e = new WeakReference<LivingEntity>(entity);
-		else
-			valid = false;
-		refSet = true;
+		if (entity == null)
+		{
+			invalidate();
+			return;
+		}
+		
+		e = entity;
+		
+		if (counterCount == 0)
+			return;
+		
+		MobRegistry.register(entity.getEntityId(), this);
+		MobCounterWheel.track(this);
 	}
 	
 	public boolean isValid()
@@ -71,22 +83,167 @@ public class MobReference
 		return valid;
 	}
 	
-	public boolean isSet()
+	/**
+	 * Marks the reference as invalid and removes it from every counter
+	 */
+	public void invalidate()
 	{
-		if (refSet)
-			return true;
-		
-		if (System.currentTimeMillis() - spawnTime > 50)
+		valid = false;
+		releaseAll();
+	}
+	
+	/**
+	 * Adds a counter which this mob counts towards
+	 * 
+	 * @param counter The counter which has already counted this mob
+	 * @param cooldown The time in milliseconds before the mob stops counting towards the counter
+	 */
+	void addCounter(MobCounter counter, int cooldown)
+	{
+		if (counterCount == counters.length)
 		{
-			valid = false;
-			return true;
+			counters = Arrays.copyOf(counters, counterCount << 1);
+			expiresAt = Arrays.copyOf(expiresAt, counterCount << 1);
 		}
 		
+		counters[counterCount] = counter;
+		expiresAt[counterCount] = cooldown > 0 ? spawnTime + cooldown : Long.MAX_VALUE;
+		++counterCount;
+	}
+	
+	/**
+	 * @return True if the mob still counts towards the counter
+	 */
+	boolean countedBy(MobCounter counter)
+	{
+		for (int i = 0; i < counterCount; ++i)
+		{
+			if (counters[i] == counter)
+				return (released & (1 << i)) == 0;
+		}
 		return false;
 	}
 	
-	public void invalidate()
+	/**
+	 * @return True if the mob no longer counts towards any counter
+	 */
+	boolean isReleased()
 	{
-		valid = false;
+		return Integer.bitCount(released) == counterCount;
+	}
+	
+	/**
+	 * Removes the mob from a counter
+	 */
+	void release(MobCounter counter)
+	{
+		for (int i = 0; i < counterCount; ++i)
+		{
+			if (counters[i] == counter)
+				release(i);
+		}
+	}
+	
+	private void release(int i)
+	{
+		if ((released & (1 << i)) != 0)
+			return;
+		
+		released |= 1 << i;
+		counters[i].release();
+	}
+	
+	private void releaseAll()
+	{
+		for (int i = 0; i < counterCount; ++i)
+			release(i);
+	}
+	
+	/**
+	 * Called when the mob dies or is removed from the world</br>
+	 * Removes the mob from every counter which doesn't require its cooldown to expire as well
+	 */
+	void died()
+	{
+		dead = true;
+		
+		for (int i = 0; i < counterCount; ++i)
+		{
+			if (!counters[i].enforcesAllRemovalConditions() || (expired & (1 << i)) != 0)
+				release(i);
+		}
+	}
+	
+	/**
+	 * Handles the cooldowns which have expired
+	 * 
+	 * @param now The current time (System.currentTimeMillis)
+	 * 
+	 * @return The time the next cooldown expires, or Long.MAX_VALUE if there are none left
+	 */
+	long expire(long now)
+	{
+		long next = Long.MAX_VALUE;
+		
+		for (int i = 0; i < counterCount; ++i)
+		{
+			int bit = 1 << i;
+			if ((released & bit) != 0 || (expired & bit) != 0)
+				continue;
+			
+			if (expiresAt[i] > now)
+			{
+				next = Math.min(next, expiresAt[i]);
+				continue;
+			}
+			
+			expired |= bit;
+			
+			// If we need both conditions wait for the mob to die as well
+			if (dead || !counters[i].enforcesAllRemovalConditions())
+				release(i);
+		}
+		
+		return next;
+	}
+	
+	/**
+	 * Checks if the mob should be removed from any of its counters
+	 * 
+	 * @return True if the mob no longer needs to be tracked
+	 */
+	boolean prune()
+	{
+		LivingEntity entity = getEntity();
+		
+		if (entity == null)
+		{
+			if (!dead)
+				died();
+		}
+		else
+		{
+			for (int i = 0; i < counterCount; ++i)
+			{
+				if ((released & (1 << i)) == 0 && counters[i].remove(entity))
+					release(i);
+			}
+		}
+		
+		return isReleased();
+	}
+	
+	/**
+	 * Returns the earliest cooldown which hasn't expired
+	 */
+	long getNextExpiry()
+	{
+		long next = Long.MAX_VALUE;
+		for (int i = 0; i < counterCount; ++i)
+		{
+			if ((released & (1 << i)) == 0 && (expired & (1 << i)) == 0)
+				next = Math.min(next, expiresAt[i]);
+		}
+		return next;
 	}
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.spawner.util;
+
+import org.bukkit.entity.LivingEntity;
+
+import com.forgenz.mobmanager.common.util.LongObjectMap;
+
+/**
+ * Tracks every spawned mob which counts towards a limit, keyed by entity id</br>
+ * Each mob is tracked once no matter how many limits it counts towards, so a
+ * death only needs one lookup to remove it from all of them
+ * <p>
+ * Should only be used from the main thread
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class MobRegistry
+{
+	private static final LongObjectMap<MobReference> mobs = new LongObjectMap<MobReference>(256);
+	
+	private MobRegistry()
+	{
+	}
+	
+	static void register(int entityId, MobReference mobRef)
+	{
+		mobs.put(entityId, mobRef);
+	}
+	
+	/**
+	 * Removes a mob which has died from every limit it counts towards
+	 * 
+	 * @param entity The entity which died
+	 */
+	public static void died(LivingEntity entity)
+	{
+		if (mobs.isEmpty())
+			return;
+		
+		MobReference mobRef = mobs.get(entity.getEntityId());
+		
+		if (mobRef == null)
+			return;
+		
+		mobRef.died();
+		
+		// Mobs which are still waiting for a cooldown stay in the registry until it expires
+		if (mobRef.isReleased())
+			mobs.remove(entity.getEntityId());
+	}
+	
+	/**
+	 * Checks every tracked mob, removing mobs which have been removed from
+	 * the world or should no longer count towards their limits
+	 */
+	static void prune()
+	{
+		for (long id : mobs.keys())
+		{
+			if (mobs.get(id).prune())
+				mobs.remove(id);
+		}
+	}
+	
+	/**
+	 * Removes every mob which counts towards the given counter</br>
+	 * Mobs which would not despawn normally are left alone
+	 * 
+	 * @param counter The counter
+	 */
+	static void killAll(MobCounter counter)
+	{
+		for (long id : mobs.keys())
+		{
+			MobReference mobRef = mobs.get(id);
+			
+			if (!mobRef.countedBy(counter))
+				continue;
+			
+			LivingEntity entity = mobRef.getEntity();
+			
+			if (entity != null && entity.getRemoveWhenFarAway())
+				entity.remove();
+			
+			mobRef.release(counter);
+			
+			if (mobRef.isReleased())
+				mobs.remove(id);
+		}
+	}
+	
+	/**
+	 * @return The number of mobs being tracked
+	 */
+	public static int size()
+	{
+		return mobs.size();
+	}
+	
+	/**
+	 * Stops tracking every mob
+	 */
+	static void clear()
+	{
+		mobs.clear();
+	}
+}
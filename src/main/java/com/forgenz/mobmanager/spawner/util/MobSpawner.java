@@ -33,10 +33,10 @@ import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 
 import com.forgenz.mobmanager.MMComponent;
-import com.forgenz.mobmanager.P;
 import com.forgenz.mobmanager.abilities.config.AbilityConfig;
 import com.forgenz.mobmanager.abilities.config.MobAbilityConfig;
 import com.forgenz.mobmanager.abilities.listeners.AbilitiesMobListener;
+import com.forgenz.mobmanager.common.util.SpawnContext;
 import com.forgenz.mobmanager.spawner.config.Mob;
 import com.forgenz.mobmanager.spawner.config.Region;
 
@@ -66,9 +66,6 @@ public class MobSpawner
 	
 	public boolean spawn()
 	{
-		// Don't let the limiter or abilities component mess with us
-		P.p().ignoreNextSpawn(true);
-		
 		// Add the height offset to the mobs spawn location
 		if (!mob.addHeightOffset(location, playerY, heightRange))
 			return false;
@@ -77,7 +74,7 @@ public class MobSpawner
 		MobReference mobRef = new MobReference();
 		if (!mob.bypassMobManagerLimit)
 		{
-			MMComponent.getSpawner().getSpawnFinder().addSpawnedMob(player, mob, mobRef);
+			MMComponent.getSpawner().getSpawnFinder().addSpawnedMob(player, region, mob, mobRef);
 			region.addSpawnedMob(mob, mobRef);
 		}
 		mob.addSpawnedMob(mobRef);
@@ -87,7 +84,17 @@ public class MobSpawner
 			return false;
 		
 		// Spawn the new mob
-		LivingEntity entity = mob.getMobType().spawnMob(location);
+		// Don't let the limiter or abilities component mess with us
+		LivingEntity entity;
+		SpawnContext context = SpawnContext.open().ignoreAll().type(mob.getMobType()).player(player).region(region);
+		try
+		{
+			entity = mob.getMobType().spawnMob(location);
+		}
+		finally
+		{
+			context.close();
+		}
 		
 		// Set the reference to the entity
 		mobRef.setReference(entity);
@@ -112,7 +119,7 @@ public class MobSpawner
 				// Check if we should apply normal abilities
 				if (mob.getAbilitySet().applyNormalAbilities())
 					// Fetch the mobs config
-					mobCfg = AbilityConfig.i().getMobConfig(entity.getWorld().getName(), mob.getMobType(), null);
+					mobCfg = AbilityConfig.i().getMobConfig(entity.getWorld(), mob.getMobType(), null);
 				else
 					applyNormalAbilities = false;
 				
@@ -124,7 +131,7 @@ public class MobSpawner
 			// If we don't have rates from the ability set fetch the default ones
 			else
 			{
-				mobCfg = rateMa = AbilityConfig.i().getMobConfig(entity.getWorld().getName(), mob.getMobType(), null);
+				mobCfg = rateMa = AbilityConfig.i().getMobConfig(entity.getWorld(), mob.getMobType(), null);
 				
 				// If there is no config for this mob we are done
 				if (mobCfg == null)
@@ -23,14 +23,23 @@ public class PlayerMobCounter extends MobCounter
 	
 	public boolean withinLimit(int maxAliveMobs, int mobCooldown)
 	{
-		super.maxAliveMobs = maxAliveMobs;
-		super.mobCooldown = mobCooldown;
-		
-		return super.withinLimit();
+		return maxAliveMobs <= 0 || getMobCount() < maxAliveMobs;
+	}
+	
+	/**
+	 * Adds the entity to the players count</br>
+	 * The players limits are checked before the mob is spawned so the entity is always added
+	 * 
+	 * @param mobRef The entity to add
+	 * @param mobCooldown The time in milliseconds before the entity stops counting towards the players limits
+	 */
+	public boolean add(MobReference mobRef, int mobCooldown)
+	{
+		return add(mobRef, 0, mobCooldown);
 	}
 	
 	@Override
-	public boolean remove(LivingEntity entity)
+	protected boolean remove(LivingEntity entity)
 	{
 		Player player = this.player.get();
 		
@@ -63,6 +72,10 @@ public class PlayerMobCounter extends MobCounter
 		Location mobLoc = LocationCache.getCachedLocation(entity);
 		
 		// Check if the locations are out of range
-		return !FinderMode.CYLINDER.withinRange(playerLoc, mobLoc, MMComponent.getSpawner().getConfig().mobDistanceForLimitRemoval, 32);
+		boolean outOfRange = !FinderMode.CYLINDER.withinRange(playerLoc, mobLoc, MMComponent.getSpawner().getConfig().mobDistanceForLimitRemoval, 32);
+		
+		LocationCache.release(playerLoc);
+		LocationCache.release(mobLoc);
+		return outOfRange;
 	}
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.spawner.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Holds the counters used for a players mob limits</br>
+ * Grouped limits are kept in an array indexed by their group id (See {@link #getGroupId(String)})
+ * so checking them needs no string hashing or locking
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class PlayerSpawnState
+{
+	private static final PlayerMobCounter[] NO_GROUPS = new PlayerMobCounter[0];
+	private static final HashMap<String, Integer> groupIds = new HashMap<String, Integer>();
+	
+	private final Player player;
+	private final PlayerMobCounter mobs;
+	/** Replaced rather than modified so it can be read from any thread */
+	private volatile PlayerMobCounter[] groups = NO_GROUPS;
+	
+	public PlayerSpawnState(Player player)
+	{
+		this.player = player;
+		this.mobs = new PlayerMobCounter(player);
+	}
+	
+	/**
+	 * Fetches the id of a PlayerLimitGroup</br>
+	 * Ids are never reused, so they stay valid across config reloads
+	 * 
+	 * @param group The name of the group (Lower case)
+	 * 
+	 * @return The id of the group or -1 if the name is empty
+	 */
+	public static int getGroupId(String group)
+	{
+		if (group.length() == 0)
+			return -1;
+		
+		synchronized (groupIds)
+		{
+			Integer id = groupIds.get(group);
+			
+			if (id == null)
+				groupIds.put(group, id = groupIds.size());
+			
+			return id;
+		}
+	}
+	
+	/**
+	 * @return The counter for all mobs spawned for the player
+	 */
+	public PlayerMobCounter getMobs()
+	{
+		return mobs;
+	}
+	
+	/**
+	 * Fetches the counter for a PlayerLimitGroup
+	 * 
+	 * @param groupId The id of the group
+	 * 
+	 * @return The counter, or null if no mobs in the group have been spawned for the player
+	 */
+	public PlayerMobCounter getGroup(int groupId)
+	{
+		PlayerMobCounter[] groups = this.groups;
+		return groupId >= 0 && groupId < groups.length ? groups[groupId] : null;
+	}
+	
+	/**
+	 * Fetches the counter for a PlayerLimitGroup, creating it if it does not exist
+	 * 
+	 * @param groupId The id of the group
+	 */
+	public synchronized PlayerMobCounter getOrCreateGroup(int groupId)
+	{
+		PlayerMobCounter counter = getGroup(groupId);
+		
+		if (counter != null)
+			return counter;
+		
+		PlayerMobCounter[] groups = this.groups;
+		if (groupId >= groups.length)
+			groups = Arrays.copyOf(groups, groupId + 1);
+		else
+			groups = groups.clone();
+		
+		groups[groupId] = counter = new PlayerMobCounter(player);
+		this.groups = groups;
+		return counter;
+	}
+}
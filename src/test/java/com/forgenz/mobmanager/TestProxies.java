@@ -0,0 +1,114 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Creates stand-ins for Bukkit interfaces in tests</br>
+ * Only the methods a test cares about need answering, every other method
+ * returns null, or zero/false for primitives
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public final class TestProxies
+{
+	/**
+	 * Answers the methods a test cares about
+	 */
+	public interface Answer
+	{
+		/**
+		 * @return The result of the method, or null to use the default
+		 */
+		Object answer(Object proxy, String name, Object[] args);
+	}
+	
+	private TestProxies() {}
+	
+	/**
+	 * Creates a proxy which returns the default value from every method
+	 */
+	public static <T> T create(Class<T> clazz)
+	{
+		return create(clazz, null);
+	}
+	
+	/**
+	 * Creates a proxy which asks the answer for the result of each method</br>
+	 * hashCode, equals and toString use the identity of the proxy unless answered
+	 */
+	public static <T> T create(Class<T> clazz, final Answer answer)
+	{
+		return clazz.cast(Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[] { clazz }, new InvocationHandler()
+		{
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args)
+			{
+				Object result = answer != null ? answer.answer(proxy, method.getName(), args) : null;
+				if (result != null)
+					return result;
+				
+				return defaultResult(proxy, method, args);
+			}
+		}));
+	}
+	
+	private static Object defaultResult(Object proxy, Method method, Object[] args)
+	{
+		String name = method.getName();
+		if (name.equals("hashCode") && method.getParameterTypes().length == 0)
+			return System.identityHashCode(proxy);
+		if (name.equals("equals") && method.getParameterTypes().length == 1)
+			return proxy == args[0];
+		if (name.equals("toString") && method.getParameterTypes().length == 0)
+			return "Proxy@" + Integer.toHexString(System.identityHashCode(proxy));
+		
+		Class<?> type = method.getReturnType();
+		if (!type.isPrimitive() || type == void.class)
+			return null;
+		if (type == boolean.class)
+			return false;
+		if (type == char.class)
+			return '\0';
+		if (type == byte.class)
+			return (byte) 0;
+		if (type == short.class)
+			return (short) 0;
+		if (type == int.class)
+			return 0;
+		if (type == long.class)
+			return 0L;
+		if (type == float.class)
+			return 0F;
+		return 0D;
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.common.util;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Horse;
+import org.bukkit.entity.Horse.Color;
+import org.bukkit.entity.Horse.Style;
+import org.bukkit.entity.Horse.Variant;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Skeleton;
+import org.bukkit.entity.Skeleton.SkeletonType;
+import org.junit.Test;
+
+import com.forgenz.mobmanager.TestProxies;
+
+/**
+ * Checks entities resolve to the types they are registered under
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class ExtendedEntityTypeTest
+{
+	private static int nextEntityId = 0;
+	
+	@Test
+	public void testBaseTypes()
+	{
+		for (EntityType type : EntityType.values())
+		{
+			if (!type.isAlive() || type == EntityType.PLAYER || type == EntityType.SKELETON || type == EntityType.HORSE)
+				continue;
+			
+			LivingEntity entity = createEntity(LivingEntity.class, type, null, null, null, null);
+			
+			assertSame(type.toString(), ExtendedEntityType.valueOf(type), ExtendedEntityType.valueOf(entity));
+			assertSame(type.toString(), ExtendedEntityType.valueOf(ExtendedEntityType.getEntityTypeData(entity)), ExtendedEntityType.valueOf(entity));
+		}
+	}
+	
+	@Test
+	public void testSkeletons()
+	{
+		LivingEntity normal = createEntity(Skeleton.class, EntityType.SKELETON, SkeletonType.NORMAL, null, null, null);
+		LivingEntity wither = createEntity(Skeleton.class, EntityType.SKELETON, SkeletonType.WITHER, null, null, null);
+		
+		assertSame(ExtendedEntityType.valueOf(EntityType.SKELETON), ExtendedEntityType.valueOf(normal));
+		assertSame(ExtendedEntityType.valueOf("SKELETON_WITHER"), ExtendedEntityType.valueOf(wither));
+		assertNotSame(ExtendedEntityType.UNKNOWN, ExtendedEntityType.valueOf(wither));
+	}
+	
+	@Test
+	public void testHorses()
+	{
+		ExtendedEntityType horseType = ExtendedEntityType.valueOf(EntityType.HORSE);
+		
+		for (Variant variant : Variant.values())
+		{
+			if (variant == Variant.HORSE)
+				continue;
+			
+			LivingEntity horse = createEntity(Horse.class, EntityType.HORSE, null, variant, null, null);
+			assertSame(ExtendedEntityType.valueOf("HORSE_" + variant), ExtendedEntityType.valueOf(horse));
+		}
+		
+		for (Style style : Style.values())
+		{
+			for (Color color : Color.values())
+			{
+				LivingEntity horse = createEntity(Horse.class, EntityType.HORSE, null, Variant.HORSE, style, color);
+				ExtendedEntityType type = ExtendedEntityType.valueOf(horse);
+				
+				// Types are registered as HORSE_<color>_<style>, with style NONE left out
+				String name = "HORSE_" + color + (style != Style.NONE ? "_" + style : "");
+				assertSame(name, ExtendedEntityType.valueOf(name), type);
+				assertNotSame(name, ExtendedEntityType.UNKNOWN, type);
+				assertSame(name, horseType, type.getParent());
+			}
+		}
+	}
+	
+	/**
+	 * Creates an entity which only answers the calls used to find its type
+	 */
+	private static <T extends LivingEntity> T createEntity(Class<T> clazz, final EntityType type, final SkeletonType skeletonType, final Variant variant, final Style style, final Color color)
+	{
+		final int entityId = nextEntityId++;
+		
+		return TestProxies.create(clazz, new TestProxies.Answer()
+		{
+			@Override
+			public Object answer(Object proxy, String name, Object[] args)
+			{
+				if (name.equals("getType"))
+					return type;
+				if (name.equals("getEntityId"))
+					return entityId;
+				if (name.equals("getSkeletonType"))
+					return skeletonType;
+				if (name.equals("getVariant"))
+					return variant;
+				if (name.equals("getStyle"))
+					return style;
+				if (name.equals("getColor"))
+					return color;
+				if (name.equals("toString"))
+					return type + "#" + entityId;
+				
+				return null;
+			}
+		});
+	}
+}
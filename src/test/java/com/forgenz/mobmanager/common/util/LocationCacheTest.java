@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.bukkit.Location;
+import org.junit.Test;
+
+import com.forgenz.mobmanager.common.util.LocationCache.PoolStats;
+
+/**
+ * Checks each thread reuses the locations it releases
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class LocationCacheTest
+{
+	private static final int ITERATIONS = 1000000;
+	
+	@Test
+	public void testReleasedLocationIsReused()
+	{
+		Location loc = LocationCache.getCachedLocation();
+		LocationCache.release(loc);
+		
+		assertSame(loc, LocationCache.getCachedLocation());
+		LocationCache.release(loc);
+	}
+	
+	@Test
+	public void testDoubleReleaseIsNotHandedOutTwice()
+	{
+		Location loc = LocationCache.getCachedLocation();
+		LocationCache.release(loc);
+		LocationCache.release(loc);
+		
+		Location first = LocationCache.getCachedLocation();
+		Location second = LocationCache.getCachedLocation();
+		assertNotSame(first, second);
+		
+		LocationCache.release(first);
+		LocationCache.release(second);
+	}
+	
+	@Test
+	public void testThreadsUseTheirOwnPools() throws InterruptedException
+	{
+		final int threads = 4;
+		final PoolStats[] results = new PoolStats[threads];
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; ++i)
+		{
+			final int worker = i;
+			workers[i] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < ITERATIONS; ++i)
+						LocationCache.release(LocationCache.getCachedLocation());
+					
+					// Fetch the stats before the thread dies and its pool is dropped
+					results[worker] = getStats(Thread.currentThread().getName());
+				}
+			}, "LocationCacheTest-" + i);
+		}
+		
+		for (Thread worker : workers)
+			worker.start();
+		for (Thread worker : workers)
+			worker.join();
+		
+		// Each thread only needs to create its first location
+		for (PoolStats stats : results)
+		{
+			assertNotNull(stats);
+			assertEquals(ITERATIONS, stats.acquired);
+			assertEquals(1, stats.allocated);
+			assertEquals(ITERATIONS, stats.released);
+		}
+	}
+	
+	private static PoolStats getStats(String thread)
+	{
+		for (PoolStats stats : LocationCache.getStats())
+		{
+			if (stats.thread.equals(thread))
+				return stats;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.common.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.junit.Test;
+
+import com.forgenz.mobmanager.TestProxies;
+import com.forgenz.mobmanager.common.util.PlayerFinder.FinderMode;
+
+/**
+ * Checks the player index finds the same players as checking every player
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class PlayerIndexTest
+{
+	private static final int PLAYERS = 64;
+	private static final int CHECKS = 100000;
+	private static final int AREA = 4096;
+	private static final int SEARCH_DISTANCE_SQUARED = 128 * 128;
+	private static final int SEARCH_HEIGHT = 24;
+	
+	@Test
+	public void testIndexMatchesScan()
+	{
+		Random random = new Random(0L);
+		World world = TestProxies.create(World.class);
+		
+		Player[] players = new Player[PLAYERS];
+		Location[] playerLocs = new Location[PLAYERS];
+		for (int i = 0; i < PLAYERS; ++i)
+		{
+			playerLocs[i] = new Location(world, random.nextInt(AREA), random.nextInt(128), random.nextInt(AREA));
+			players[i] = createPlayer(world, playerLocs[i]);
+		}
+		
+		PlayerIndex index = new PlayerIndex();
+		index.rebuild(players);
+		assertEquals(PLAYERS, index.getIndexedPlayerCount());
+		
+		for (int i = 0; i < CHECKS; ++i)
+		{
+			Location mobLoc = new Location(world, random.nextInt(AREA), random.nextInt(128), random.nextInt(AREA));
+			
+			assertEquals("Mob " + i, scanPlayerNear(mobLoc, playerLocs), index.playerNear(mobLoc, FinderMode.CYLINDER, SEARCH_DISTANCE_SQUARED, SEARCH_HEIGHT));
+		}
+	}
+	
+	/**
+	 * The linear scan used before the index was built
+	 */
+	private static boolean scanPlayerNear(Location location, Location[] playerLocs)
+	{
+		for (Location playerLoc : playerLocs)
+		{
+			if (FinderMode.CYLINDER.withinRange(location, playerLoc, SEARCH_DISTANCE_SQUARED, SEARCH_HEIGHT))
+				return true;
+		}
+		return false;
+	}
+	
+	private static Player createPlayer(final World world, final Location location)
+	{
+		return TestProxies.create(Player.class, new TestProxies.Answer()
+		{
+			@Override
+			public Object answer(Object proxy, String name, Object[] args)
+			{
+				if (name.equals("getGameMode"))
+					return GameMode.SURVIVAL;
+				if (name.equals("getWorld"))
+					return world;
+				if (name.equals("getLocation"))
+				{
+					if (args == null || args.length == 0)
+						return location.clone();
+					
+					Location loc = (Location) args[0];
+					loc.setWorld(world);
+					loc.setX(location.getX());
+					loc.setY(location.getY());
+					loc.setZ(location.getZ());
+					return loc;
+				}
+				
+				return null;
+			}
+		});
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks RandomUtil's per thread generators are reproducible and uniform
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class RandomUtilTest
+{
+	private static final int ITERATIONS = 1000000;
+	
+	@Test
+	public void testSeedIsReproducible()
+	{
+		RandomUtil.setSeed(42L);
+		int[] first = nextInts(RandomUtil.i(), 16);
+		
+		RandomUtil.setSeed(42L);
+		int[] second = nextInts(RandomUtil.i(), 16);
+		
+		assertArrayEquals(first, second);
+	}
+	
+	@Test
+	public void testThreadsHaveTheirOwnGenerator() throws InterruptedException
+	{
+		final Random[] other = new Random[1];
+		ThreadTestUtil.runThreads(1, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				other[0] = RandomUtil.i();
+			}
+		});
+		
+		assertNotSame(RandomUtil.i(), other[0]);
+	}
+	
+	@Test
+	public void testNextIntIsUniform()
+	{
+		Random random = RandomUtil.i();
+		int buckets = 16;
+		int[] counts = new int[buckets];
+		
+		for (int i = 0; i < ITERATIONS; ++i)
+			++counts[random.nextInt(buckets)];
+		
+		// Each bucket should be within 2% of the expected count
+		int expected = ITERATIONS / buckets;
+		for (int count : counts)
+			assertTrue("Bucket count " + count, Math.abs(count - expected) < expected / 50);
+	}
+	
+	private static int[] nextInts(Random random, int count)
+	{
+		int[] ints = new int[count];
+		for (int i = 0; i < count; ++i)
+			ints[i] = random.nextInt();
+		return ints;
+	}
+}
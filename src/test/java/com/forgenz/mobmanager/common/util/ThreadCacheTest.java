@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Checks ThreadCache keeps a separate value for each thread
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class ThreadCacheTest
+{
+	@Test
+	public void testValuesArePerThread() throws InterruptedException
+	{
+		final ThreadCache<Object> cache = new ThreadCache<Object>();
+		final Object value = new Object();
+		cache.set(value);
+		
+		final Object[] otherValue = new Object[1];
+		Thread other = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				otherValue[0] = cache.get();
+			}
+		});
+		other.start();
+		other.join();
+		
+		assertSame(value, cache.get());
+		assertNull(otherValue[0]);
+	}
+	
+	@Test
+	public void testClassConstructorCreatesValues() throws InterruptedException
+	{
+		final ThreadCache<StringBuilder> cache = new ThreadCache<StringBuilder>(StringBuilder.class);
+		final AtomicInteger created = new AtomicInteger();
+		
+		ThreadTestUtil.runThreads(4, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				StringBuilder builder = cache.get();
+				
+				// Each thread should get its own object which is kept
+				if (builder != null && builder.length() == 0 && builder == cache.get())
+				{
+					builder.append(Thread.currentThread().getName());
+					created.incrementAndGet();
+				}
+			}
+		});
+		
+		assertEquals(4, created.get());
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.common.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks both ways of sampling pick indexes in proportion to their weights
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class WeightedSamplerTest
+{
+	private static final int ITERATIONS = 1000000;
+	private static final int[] WEIGHTS = { 1, 2, 3, 4, 0, 10 };
+	
+	@Test
+	public void testAliasTableFollowsWeights()
+	{
+		WeightedSampler sampler = new WeightedSampler(WEIGHTS);
+		assertEquals(20, sampler.getTotalWeight());
+		
+		Random random = new Random(0L);
+		int[] counts = new int[WEIGHTS.length];
+		for (int i = 0; i < ITERATIONS; ++i)
+			++counts[sampler.sample(random)];
+		
+		assertFollowsWeights(counts);
+	}
+	
+	@Test
+	public void testRunningTotalsFollowWeights()
+	{
+		int[] cumulative = new int[WEIGHTS.length];
+		int total = 0;
+		for (int i = 0; i < WEIGHTS.length; ++i)
+			cumulative[i] = total += WEIGHTS[i];
+		
+		Random random = new Random(0L);
+		int[] counts = new int[WEIGHTS.length];
+		for (int i = 0; i < ITERATIONS; ++i)
+			++counts[WeightedSampler.sample(random, cumulative, cumulative.length)];
+		
+		assertFollowsWeights(counts);
+	}
+	
+	@Test
+	public void testNoWeights()
+	{
+		Random random = new Random(0L);
+		
+		assertEquals(-1, new WeightedSampler(new int[0]).sample(random));
+		assertEquals(-1, new WeightedSampler(new int[] { 0, 0 }).sample(random));
+		assertEquals(-1, WeightedSampler.sample(random, new int[] { 0, 0 }, 2));
+		assertEquals(-1, WeightedSampler.sample(random, new int[] { 5 }, 0));
+	}
+	
+	/**
+	 * Checks each index was picked within 0.5% of its share of the weights
+	 */
+	private static void assertFollowsWeights(int[] counts)
+	{
+		int total = 0;
+		for (int weight : WEIGHTS)
+			total += weight;
+		
+		for (int i = 0; i < WEIGHTS.length; ++i)
+			assertEquals("Index " + i, (double) WEIGHTS[i] / total, (double) counts[i] / ITERATIONS, 0.005);
+	}
+}
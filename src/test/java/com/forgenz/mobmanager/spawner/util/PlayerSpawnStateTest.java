@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 Michael McKnight. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and contributors and should not be interpreted as representing official policies,
+ * either expressed or implied, of anybody else.
+ */
+package com.forgenz.mobmanager.spawner.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.forgenz.mobmanager.common.util.ThreadTestUtil;
+
+/**
+ * Checks grouped player limits are found by their group id
+ * 
+ * @author Michael McKnight (ShadowDog007)
+ *
+ */
+public class PlayerSpawnStateTest
+{
+	private static final int THREADS = 16;
+	
+	@Test
+	public void testGroupIds()
+	{
+		int id = PlayerSpawnState.getGroupId("testgroupids");
+		
+		assertEquals(id, PlayerSpawnState.getGroupId("testgroupids"));
+		assertEquals(-1, PlayerSpawnState.getGroupId(""));
+	}
+	
+	@Test
+	public void testGroupsAreCreatedOnce() throws InterruptedException
+	{
+		final int groupId = PlayerSpawnState.getGroupId("testgroupsarecreatedonce");
+		final PlayerSpawnState state = new PlayerSpawnState(null);
+		
+		assertNull(state.getGroup(groupId));
+		
+		final PlayerMobCounter[] created = new PlayerMobCounter[THREADS];
+		final int[] next = new int[1];
+		ThreadTestUtil.runThreads(THREADS, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				PlayerMobCounter counter = state.getOrCreateGroup(groupId);
+				synchronized (created)
+				{
+					created[next[0]++] = counter;
+				}
+			}
+		});
+		
+		PlayerMobCounter counter = state.getGroup(groupId);
+		assertNotNull(counter);
+		for (PlayerMobCounter c : created)
+			assertSame(counter, c);
+	}
+}